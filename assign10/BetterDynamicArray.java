@@ -3,8 +3,12 @@ import java.util.Arrays;
 
 
 /**
- * This class represents a better dynamic array of AudioEvents, doubling the length of
- * the backing array when more space is needed and never shrinking.
+ * This class represents a better dynamic array of AudioEvents, growing the backing
+ * array by a growth factor (doubling by default) when more space is needed.
+ * Removing elements keeps the backing array's capacity, so an array that is
+ * emptied and filled again over and over doesn't reallocate; trimToSize gives
+ * the space back. Elements are shifted with System.arraycopy, and removed
+ * slots are cleared so they don't keep old elements reachable.
  * 
  * @author Prof. Parker, Prof. Heisler, and River Whitten
  * @version 11.07.24
@@ -14,6 +18,8 @@ public class BetterDynamicArray<T> {
 	
 	private T[] elements; // the backing array
 	private int elementCount; // the number of elements
+	private int initialCapacity = 10; // trimToSize never shrinks the backing array below this
+	private double growthFactor = 2.0; // how much the backing array grows by
 
 	/**
 	 * Creates a dynamic array with space for ten elements, but zero spaces occupied.
@@ -24,6 +30,27 @@ public class BetterDynamicArray<T> {
 		elements = (T[]) new Object[10];
 		elementCount = 0;
 	}
+	
+	/**
+	 * Creates an empty dynamic array with a given starting capacity and growth factor.
+	 * Use a large capacity when the final size is known, or a smaller growth
+	 * factor to waste less space in very large arrays.
+	 * 
+	 * @param initialCapacity - space for elements before the backing array grows
+	 * @param growthFactor - what the capacity is multiplied by when it grows
+	 * @throws IllegalArgumentException if the capacity is negative or the factor is not greater than 1
+	 */
+	@SuppressWarnings("unchecked")
+	public BetterDynamicArray(int initialCapacity, double growthFactor) {
+		if(initialCapacity < 0)
+			throw new IllegalArgumentException("Negative capacity: " + initialCapacity);
+		if(!(growthFactor > 1.0))
+			throw new IllegalArgumentException("Growth factor must be greater than 1: " + growthFactor);
+		this.initialCapacity = Math.max(1, initialCapacity);
+		this.growthFactor = growthFactor;
+		elements = (T[]) new Object[this.initialCapacity];
+		elementCount = 0;
+	}
 
 	/**
 	 * Appends the given AudioEvent to end of this dynamic array.
@@ -52,12 +79,10 @@ public class BetterDynamicArray<T> {
 		
 
 		if(elementCount == elements.length) 
-			doubleBackingArray();
+			ensureCapacity(elementCount + 1);
 
 
-		for(int i = elementCount - 1; i >= index; i--) {
-			elements[i + 1] = elements[i];
-		}
+		System.arraycopy(elements, index, elements, index + 1, elementCount - index);
 		
 
 		elements[index] = value;
@@ -67,17 +92,71 @@ public class BetterDynamicArray<T> {
 	}
 	
 	/**
-	 * Creates a new array with twice the length as the backing array.
-	 * Copies all elements from the backing array to the new array.
-	 * Sets the backing array reference to the new array.
+	 * Appends all elements of another dynamic array to the end of this one,
+	 * growing the backing array at most once.
+	 * 
+	 * @param other - the elements to append
 	 */
-	private void doubleBackingArray() {
-		T[] largerArray = (T[]) new Object[elements.length * 2];
-		for(int i = 0; i < elements.length; i++) 
-			largerArray[i] = elements[i];			
-		elements = largerArray;
+	public void addAll(BetterDynamicArray<T> other) {
+		addAll(other, 0, other.elementCount);
 	}
-
+	
+	/**
+	 * Appends the elements of another dynamic array in the range
+	 * [fromIndex, toIndex) to the end of this one, growing the backing
+	 * array at most once.
+	 * 
+	 * @param other - the elements to append
+	 * @param fromIndex - index of the first element to append
+	 * @param toIndex - index after the last element to append
+	 * @throws IndexOutOfBoundsException if the range is out of bounds
+	 */
+	public void addAll(BetterDynamicArray<T> other, int fromIndex, int toIndex) {
+		if(fromIndex < 0 || toIndex > other.elementCount || fromIndex > toIndex) {
+			throw new IndexOutOfBoundsException();
+		}
+		int count = toIndex - fromIndex;
+		ensureCapacity(elementCount + count);
+		System.arraycopy(other.elements, fromIndex, elements, elementCount, count);
+		elementCount += count;
+	}
+	
+	/**
+	 * Makes sure the backing array can hold at least the given number of
+	 * elements without growing again. If it must grow, it grows by the
+	 * growth factor or to the given capacity, whichever is larger.
+	 * 
+	 * @param minCapacity - the number of elements that must fit
+	 */
+	public void ensureCapacity(int minCapacity) {
+		if(minCapacity <= elements.length)
+			return;
+		long grown = (long)(elements.length * growthFactor);
+		int newCapacity = (int)Math.min(Integer.MAX_VALUE - 8, Math.max(grown, elements.length + 1L));
+		resize(Math.max(minCapacity, newCapacity));
+	}
+	
+	/**
+	 * Shrinks the backing array to the number of elements, or to the
+	 * initial capacity if that is larger. Use after filling an array that
+	 * won't grow again, or after clearing one that won't be filled again.
+	 */
+	public void trimToSize() {
+		int capacity = Math.max(initialCapacity, elementCount);
+		if(capacity < elements.length)
+			resize(capacity);
+	}
+	
+	/**
+	 * Creates a new backing array of the given length and copies all
+	 * elements into it with a single array copy.
+	 * 
+	 * @param capacity - length of the new backing array, at least the number of elements
+	 */
+	private void resize(int capacity) {
+		elements = Arrays.copyOf(elements, capacity);
+	}
+	
 	/**
 	 * Gets the AudioEvent stored in this dynamic array at the given index.
 	 * 
@@ -136,16 +215,31 @@ public class BetterDynamicArray<T> {
 		}
 
 
-		for(int i = index; i < elementCount - 1; i++) {
-			elements[i] = elements[i + 1];
-		}
+		System.arraycopy(elements, index + 1, elements, index, elementCount - index - 1);
 		elements[elementCount - 1] = null;
 		
 		elementCount--;
-		
 	
 	}
 	
+	/**
+	 * Removes the elements in the range [fromIndex, toIndex), shifting later
+	 * elements down with a single array copy.
+	 * 
+	 * @param fromIndex - index of the first element to remove
+	 * @param toIndex - index after the last element to remove
+	 * @throws IndexOutOfBoundsException if the range is out of bounds
+	 */
+	public void removeRange(int fromIndex, int toIndex) {
+		if(fromIndex < 0 || toIndex > elementCount || fromIndex > toIndex) {
+			throw new IndexOutOfBoundsException();
+		}
+		System.arraycopy(elements, toIndex, elements, fromIndex, elementCount - toIndex);
+		int newCount = elementCount - (toIndex - fromIndex);
+		Arrays.fill(elements, newCount, elementCount, null);
+		elementCount = newCount;
+	}
+	
 	/**
 	 * Removes the first element in the array that is equal to the given value.
 	 * If no equal element is found, the array is not changed.
@@ -172,12 +266,14 @@ public class BetterDynamicArray<T> {
 	
 	/**
 	 * Removes all elements from the dynamic array.
+	 * The references are released so the elements can be garbage collected.
+	 * The backing array keeps its capacity; call trimToSize to shrink it.
 	 */
 	public void clear() {
 		
+		Arrays.fill(elements, 0, elementCount, null);
 		elementCount = 0;
 		
-		
 	}
 	
 	/**
@@ -190,6 +286,89 @@ public class BetterDynamicArray<T> {
 		
 		Arrays.sort(elements, 0, elementCount);
 	}
+	
+	/**
+	 * Determines whether the elements are in order from smallest to largest.
+	 * This depends on the elements implementing the Comparable interface.
+	 * 
+	 * @return true if no element is greater than the element after it
+	 */
+	public boolean isSorted() {
+		for(int i = 1; i < elementCount; i++) {
+			if(compare(elements[i - 1], elements[i]) > 0)
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Inserts a value into this sorted dynamic array, keeping it sorted.
+	 * The value is placed after any elements equal to it, so elements that
+	 * compare equal stay in the order they were added.
+	 * A binary search finds the position, and later elements are shifted
+	 * with a single array copy.
+	 * 
+	 * @param value - the element to insert
+	 * @return the index at which the value was inserted
+	 */
+	public int insertSorted(T value) {
+		
+		int low = 0;
+		int high = elementCount;
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(compare(elements[mid], value) <= 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		
+		if(elementCount == elements.length)
+			ensureCapacity(elementCount + 1);
+		
+		System.arraycopy(elements, low, elements, low + 1, elementCount - low);
+		elements[low] = value;
+		elementCount++;
+		return low;
+	}
+	
+	/**
+	 * Merges all elements of another sorted dynamic array into this sorted one.
+	 * Both arrays must already be sorted. Takes time proportional to the
+	 * combined size, and elements from the other array are placed after
+	 * any equal elements already in this one. The other array is not changed.
+	 * 
+	 * @param other - sorted elements to merge in
+	 */
+	public void mergeSorted(BetterDynamicArray<T> other) {
+		
+		int total = elementCount + other.elementCount;
+		ensureCapacity(total);
+		
+		// Fill from the back so no element is overwritten before it is moved.
+		int i = elementCount - 1;
+		int j = other.elementCount - 1;
+		for(int k = total - 1; j >= 0; k--) {
+			if(i >= 0 && compare(elements[i], other.elements[j]) > 0)
+				elements[k] = elements[i--];
+			else
+				elements[k] = other.elements[j--];
+		}
+		
+		elementCount = total;
+	}
+	
+	/**
+	 * Compares two elements by their natural ordering.
+	 * 
+	 * @param a - first element
+	 * @param b - second element
+	 * @return negative, zero, or positive as a is less than, equal to, or greater than b
+	 */
+	@SuppressWarnings("unchecked")
+	private int compare(T a, T b) {
+		return ((Comparable<T>) a).compareTo(b);
+	}
 
 	/**
 	 * Generates a textual representation of this dynamic array.
@@ -33,6 +33,15 @@ public class ChangeEvent extends AudioEvent {
         return value;
     }
 
+    /**
+     * Returns the synthesizer the change applies to.
+     *
+     * @return the synthesizer
+     */
+    public SimpleSynthesizer getSynthesizer() {
+        return synthesizer;
+    }
+
     @Override
     public void execute() {
         
@@ -0,0 +1,415 @@
+package assign10;
+import java.util.Arrays;
+
+
+/**
+ * A list of elements kept in blocks of at most BLOCK_SIZE elements, with a
+ * small directory giving the first index of each block. Finding an index is
+ * a binary search of the directory, and inserting or removing shifts only
+ * the elements of one block and the directory entries after it, instead of
+ * every later element.
+ *
+ * A snapshot shares the blocks and directory in constant time. After that,
+ * a change copies the directory and only the block it touches, so a change
+ * costs about BLOCK_SIZE plus the number of blocks, however long the list
+ * is and however often snapshots are taken. Blocks this array has already
+ * copied since the last snapshot are changed in place.
+ *
+ * @author River Whitten
+ * @version 11.22.24
+ */
+public class ChunkedArray<T> {
+
+	// Most elements a block holds before it is split in two
+	private static final int BLOCK_SIZE = 1024;
+
+	private Object[][] blocks; // blocks of elements, each filled from the start
+	private int[] blockStarts; // index of the first element of each block
+	private Object[] blockOwners; // the owner that may change each block in place
+	private int blockCount;
+	private int elementCount;
+	private Object owner; // stands for this array; replaced when a snapshot is taken
+	private boolean shared; // true while a snapshot uses the same directory
+
+	/**
+	 * Creates an empty array.
+	 */
+	public ChunkedArray() {
+		blocks = new Object[4][];
+		blockStarts = new int[4];
+		blockOwners = new Object[4];
+		owner = new Object();
+	}
+
+	/**
+	 * Creates a snapshot that shares another array's blocks and directory.
+	 *
+	 * @param other - array to take a snapshot of
+	 */
+	private ChunkedArray(ChunkedArray<T> other) {
+		blocks = other.blocks;
+		blockStarts = other.blockStarts;
+		blockOwners = other.blockOwners;
+		blockCount = other.blockCount;
+		elementCount = other.elementCount;
+		owner = new Object();
+		shared = true;
+	}
+
+	/**
+	 * Gets a copy of this array that later changes to either one do not
+	 * affect. This takes constant time; the next change to either array
+	 * copies what it touches.
+	 *
+	 * @return the copy
+	 */
+	public ChunkedArray<T> snapshot() {
+		shared = true;
+		owner = new Object(); // every block now belongs to the snapshot too
+		return new ChunkedArray<T>(this);
+	}
+
+	/**
+	 * Returns the number of elements in this array.
+	 *
+	 * @return the number of elements
+	 */
+	public int size() {
+		return elementCount;
+	}
+
+	/**
+	 * Gets the element at the given index.
+	 *
+	 * @param index - the index of the element to get
+	 * @return the element at the given index
+	 * @throws IndexOutOfBoundsException if the given index is out of bounds
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(int index) {
+		if(index < 0 || index >= elementCount) {
+			throw new IndexOutOfBoundsException();
+		}
+		int block = blockOf(index);
+		return (T)blocks[block][index - blockStarts[block]];
+	}
+
+	/**
+	 * Appends the given value to the end of this array.
+	 *
+	 * @param value - the value to append
+	 */
+	public void add(T value) {
+		insert(elementCount, value);
+	}
+
+	/**
+	 * Appends all elements of a dynamic array to the end of this one.
+	 *
+	 * @param values - the elements to append
+	 */
+	public void addAll(BetterDynamicArray<T> values) {
+		for(int i = 0; i < values.size(); i++)
+			add(values.get(i));
+	}
+
+	/**
+	 * Inserts a given value at a given index.
+	 *
+	 * @param index - the index at which to insert
+	 * @param value - the value to insert
+	 * @throws IndexOutOfBoundsException if the given index is out of bounds
+	 */
+	public void insert(int index, T value) {
+		if(index < 0 || index > elementCount) {
+			throw new IndexOutOfBoundsException();
+		}
+		beginChange();
+		if(blockCount == 0)
+			insertBlock(0, new Object[8], 0);
+		int block = index == elementCount ? blockCount - 1 : blockOf(index);
+		if(blockSize(block) == BLOCK_SIZE) {
+			split(block);
+			if(index > blockStarts[block + 1])
+				block++;
+		}
+		Object[] elements = writableBlock(block, blockSize(block) + 1);
+		int offset = index - blockStarts[block];
+		System.arraycopy(elements, offset, elements, offset + 1, blockSize(block) - offset);
+		elements[offset] = value;
+		for(int i = block + 1; i < blockCount; i++)
+			blockStarts[i]++;
+		elementCount++;
+	}
+
+	/**
+	 * Inserts a value into this sorted array, keeping it sorted.
+	 * The value is placed after any elements equal to it.
+	 *
+	 * @param value - the element to insert
+	 * @return the index at which the value was inserted
+	 */
+	public int insertSorted(T value) {
+		// Find the last block that starts with an element not greater than the value.
+		int low = 0;
+		int high = blockCount;
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(compare(blocks[mid][0], value) <= 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		int index = 0;
+		if(low > 0) {
+			Object[] elements = blocks[low - 1];
+			int from = 0;
+			int to = blockSize(low - 1);
+			while(from < to) {
+				int mid = (from + to) >>> 1;
+				if(compare(elements[mid], value) <= 0)
+					from = mid + 1;
+				else
+					to = mid;
+			}
+			index = blockStarts[low - 1] + from;
+		}
+		insert(index, value);
+		return index;
+	}
+
+	/**
+	 * Merges a sorted dynamic array into this sorted array. Elements from the
+	 * other array are placed after any equal elements already in this one.
+	 * A batch small enough that inserting it costs less than rebuilding this
+	 * array is inserted one element at a time; a larger batch is merged in
+	 * one pass over both arrays.
+	 *
+	 * @param other - sorted elements to merge in
+	 */
+	public void mergeSorted(BetterDynamicArray<T> other) {
+		if((long)other.size() * (BLOCK_SIZE + blockCount) < elementCount) {
+			for(int i = 0; i < other.size(); i++)
+				insertSorted(other.get(i));
+			return;
+		}
+		ChunkedArray<T> merged = new ChunkedArray<T>();
+		int i = 0;
+		int j = 0;
+		while(i < elementCount || j < other.size()) {
+			if(j >= other.size() || (i < elementCount && compare(get(i), other.get(j)) <= 0))
+				merged.add(get(i++));
+			else
+				merged.add(other.get(j++));
+		}
+		blocks = merged.blocks;
+		blockStarts = merged.blockStarts;
+		blockOwners = merged.blockOwners;
+		blockCount = merged.blockCount;
+		elementCount = merged.elementCount;
+		owner = merged.owner;
+		shared = false;
+	}
+
+	/**
+	 * Removes the element at the given index.
+	 * A block left empty is dropped, and a block left small is joined
+	 * with the next one, so blocks stay reasonably full.
+	 *
+	 * @param index - the index of the element to remove
+	 * @throws IndexOutOfBoundsException if the given index is out of bounds
+	 */
+	public void remove(int index) {
+		if(index < 0 || index >= elementCount) {
+			throw new IndexOutOfBoundsException();
+		}
+		beginChange();
+		int block = blockOf(index);
+		int size = blockSize(block);
+		Object[] elements = writableBlock(block, size);
+		int offset = index - blockStarts[block];
+		System.arraycopy(elements, offset + 1, elements, offset, size - offset - 1);
+		elements[size - 1] = null;
+		for(int i = block + 1; i < blockCount; i++)
+			blockStarts[i]--;
+		elementCount--;
+
+		if(size == 1) {
+			removeBlock(block);
+		} else if(block + 1 < blockCount && blockSize(block) + blockSize(block + 1) <= BLOCK_SIZE / 2) {
+			int first = blockSize(block);
+			int second = blockSize(block + 1);
+			elements = writableBlock(block, first + second);
+			System.arraycopy(blocks[block + 1], 0, elements, first, second);
+			removeBlock(block + 1);
+		}
+	}
+
+	/**
+	 * Removes all elements. Blocks shared with a snapshot are left to it.
+	 */
+	public void clear() {
+		blocks = new Object[4][];
+		blockStarts = new int[4];
+		blockOwners = new Object[4];
+		blockCount = 0;
+		elementCount = 0;
+		shared = false;
+	}
+
+	/**
+	 * Copies the elements in the range [fromIndex, toIndex) into a new dynamic array.
+	 *
+	 * @param fromIndex - index of the first element to copy
+	 * @param toIndex - index after the last element to copy
+	 * @return the elements in order
+	 * @throws IndexOutOfBoundsException if the range is out of bounds
+	 */
+	@SuppressWarnings("unchecked")
+	public BetterDynamicArray<T> getRange(int fromIndex, int toIndex) {
+		if(fromIndex < 0 || toIndex > elementCount || fromIndex > toIndex) {
+			throw new IndexOutOfBoundsException();
+		}
+		BetterDynamicArray<T> result = new BetterDynamicArray<T>(toIndex - fromIndex, 2.0);
+		if(fromIndex == toIndex)
+			return result;
+		int block = blockOf(fromIndex);
+		int offset = fromIndex - blockStarts[block];
+		for(int i = fromIndex; i < toIndex; i++) {
+			if(offset == blockSize(block)) {
+				block++;
+				offset = 0;
+			}
+			result.add((T)blocks[block][offset++]);
+		}
+		return result;
+	}
+
+	/**
+	 * Finds the block holding an index.
+	 *
+	 * @param index - of an element
+	 * @return the last block starting at or before the index
+	 */
+	private int blockOf(int index) {
+		int low = 0;
+		int high = blockCount - 1;
+		while(low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if(blockStarts[mid] <= index)
+				low = mid;
+			else
+				high = mid - 1;
+		}
+		return low;
+	}
+
+	/**
+	 * Gets the number of elements in a block.
+	 *
+	 * @param block - index of the block
+	 * @return its number of elements
+	 */
+	private int blockSize(int block) {
+		int end = block + 1 < blockCount ? blockStarts[block + 1] : elementCount;
+		return end - blockStarts[block];
+	}
+
+	/**
+	 * Copies the directory if a snapshot shares it.
+	 */
+	private void beginChange() {
+		if(!shared)
+			return;
+		int capacity = Math.max(4, blockCount + 1);
+		blocks = Arrays.copyOf(blocks, capacity);
+		blockStarts = Arrays.copyOf(blockStarts, capacity);
+		blockOwners = Arrays.copyOf(blockOwners, capacity);
+		shared = false;
+	}
+
+	/**
+	 * Gets a block that can be changed in place, copying it first if a
+	 * snapshot may share it, with room for at least the given number of elements.
+	 *
+	 * @param block - index of the block
+	 * @param minCapacity - number of elements that must fit
+	 * @return the block's elements
+	 */
+	private Object[] writableBlock(int block, int minCapacity) {
+		Object[] elements = blocks[block];
+		if(blockOwners[block] != owner || elements.length < minCapacity) {
+			int capacity = elements.length;
+			if(capacity < minCapacity)
+				capacity = Math.min(BLOCK_SIZE, Math.max(minCapacity, capacity * 2));
+			elements = Arrays.copyOf(elements, capacity);
+			blocks[block] = elements;
+			blockOwners[block] = owner;
+		}
+		return elements;
+	}
+
+	/**
+	 * Moves the second half of a full block into a new block after it.
+	 *
+	 * @param block - index of the block
+	 */
+	private void split(int block) {
+		int size = blockSize(block);
+		int half = size / 2;
+		Object[] second = new Object[BLOCK_SIZE];
+		System.arraycopy(blocks[block], half, second, 0, size - half);
+		Object[] first = writableBlock(block, size);
+		Arrays.fill(first, half, size, null);
+		insertBlock(block + 1, second, blockStarts[block] + half);
+	}
+
+	/**
+	 * Adds a block owned by this array to the directory.
+	 *
+	 * @param block - index for the new block
+	 * @param elements - its elements
+	 * @param start - index of its first element
+	 */
+	private void insertBlock(int block, Object[] elements, int start) {
+		if(blockCount == blocks.length) {
+			int capacity = blockCount * 2;
+			blocks = Arrays.copyOf(blocks, capacity);
+			blockStarts = Arrays.copyOf(blockStarts, capacity);
+			blockOwners = Arrays.copyOf(blockOwners, capacity);
+		}
+		System.arraycopy(blocks, block, blocks, block + 1, blockCount - block);
+		System.arraycopy(blockStarts, block, blockStarts, block + 1, blockCount - block);
+		System.arraycopy(blockOwners, block, blockOwners, block + 1, blockCount - block);
+		blocks[block] = elements;
+		blockStarts[block] = start;
+		blockOwners[block] = owner;
+		blockCount++;
+	}
+
+	/**
+	 * Removes a block from the directory.
+	 *
+	 * @param block - index of the block
+	 */
+	private void removeBlock(int block) {
+		System.arraycopy(blocks, block + 1, blocks, block, blockCount - block - 1);
+		System.arraycopy(blockStarts, block + 1, blockStarts, block, blockCount - block - 1);
+		System.arraycopy(blockOwners, block + 1, blockOwners, block, blockCount - block - 1);
+		blockCount--;
+		blocks[blockCount] = null;
+		blockOwners[blockCount] = null;
+	}
+
+	/**
+	 * Compares two elements by their natural ordering.
+	 *
+	 * @param a - first element
+	 * @param b - second element
+	 * @return negative, zero, or positive as a is less than, equal to, or greater than b
+	 */
+	@SuppressWarnings("unchecked")
+	private int compare(Object a, Object b) {
+		return ((Comparable<Object>)a).compareTo(b);
+	}
+}
@@ -0,0 +1,327 @@
+package assign10;
+
+/**
+ * A collection of AudioEvents kept sorted by time, with an index of the
+ * events on each channel. Because every list is sorted, looking up events
+ * by time, by time and pitch, or by channel is a binary search instead of
+ * a scan over the whole sequence.
+ *
+ * Channels must not be negative.
+ *
+ * Every change is counted, so iterators can tell when the store changed
+ * under them. The lists are ChunkedArrays, so a snapshot of the store shares
+ * them and takes time proportional to the number of channels. After a
+ * snapshot, a change copies only the blocks of the lists it touches, so
+ * editing a long sequence while it plays stays cheap.
+ *
+ * @author River Whitten
+ * @version 11.22.24
+ */
+public class EventStore {
+
+	private ChunkedArray<AudioEvent> events; // all events, sorted
+	private BetterDynamicArray<ChunkedArray<AudioEvent>> channels; // sorted events per channel
+	private int modCount; // number of changes made
+	private boolean readOnly; // true for snapshots
+
+	/**
+	 * Creates an empty store.
+	 */
+	public EventStore() {
+		this(new BetterDynamicArray<AudioEvent>());
+	}
+
+	/**
+	 * Creates a store holding the given collection of events.
+	 * The collection is sorted if it is not already, and its events are
+	 * copied into the store.
+	 *
+	 * @param events - to store
+	 * @throws IllegalArgumentException if any event has a negative channel
+	 */
+	public EventStore(BetterDynamicArray<AudioEvent> events) {
+		if(!events.isSorted())
+			events.sort();
+		this.events = new ChunkedArray<>();
+		channels = new BetterDynamicArray<>();
+		for(int i = 0; i < events.size(); i++) {
+			getChannelEvents(events.get(i).getChannel()).add(events.get(i));
+			this.events.add(events.get(i));
+		}
+	}
+
+	/**
+	 * Creates a read-only snapshot that shares the given lists.
+	 *
+	 * @param events - all events, sorted
+	 * @param channels - sorted events per channel
+	 * @param modCount - of the store the snapshot is taken of
+	 */
+	private EventStore(ChunkedArray<AudioEvent> events,
+			BetterDynamicArray<ChunkedArray<AudioEvent>> channels, int modCount) {
+		this.events = events;
+		this.channels = channels;
+		this.modCount = modCount;
+		readOnly = true;
+	}
+
+	/**
+	 * Gets a snapshot of the store that later changes to the store do not affect.
+	 * This takes time proportional to the number of channels; the next change
+	 * to the store copies only the blocks it touches.
+	 *
+	 * @return a read-only store with the same events
+	 */
+	public EventStore snapshot() {
+		if(readOnly)
+			return this;
+		BetterDynamicArray<ChunkedArray<AudioEvent>> channelsCopy = new BetterDynamicArray<>();
+		for(int i = 0; i < channels.size(); i++)
+			channelsCopy.add(channels.get(i).snapshot());
+		return new EventStore(events.snapshot(), channelsCopy, modCount);
+	}
+
+	/**
+	 * Gets the number of changes made to the store. Any add, remove, or
+	 * clear changes the count.
+	 *
+	 * @return the change count
+	 */
+	public int getModCount() {
+		return modCount;
+	}
+
+	/**
+	 * Gets the number of events in the store.
+	 *
+	 * @return number of events
+	 */
+	public int size() {
+		return events.size();
+	}
+
+	/**
+	 * Gets the event at a given position in time order.
+	 *
+	 * @param index - of the event
+	 * @return the event at that index
+	 * @throws IndexOutOfBoundsException if the index is out of bounds
+	 */
+	public AudioEvent get(int index) {
+		return events.get(index);
+	}
+
+	/**
+	 * Adds an event in sorted position.
+	 *
+	 * @param event - to add
+	 * @throws IllegalArgumentException if the event has a negative channel
+	 * @throws UnsupportedOperationException if the store is a snapshot
+	 */
+	public void add(AudioEvent event) {
+		beginChange();
+		ChunkedArray<AudioEvent> channel = getChannelEvents(event.getChannel());
+		events.insertSorted(event);
+		channel.insertSorted(event);
+	}
+
+	/**
+	 * Merges a sorted collection of events into the store. The batch is
+	 * split by channel, and each part is merged into its channel's index
+	 * with ChunkedArray.mergeSorted, as the whole batch is into the store.
+	 *
+	 * @param sortedEvents - to add, which must be sorted
+	 * @throws IllegalArgumentException if any event has a negative channel
+	 * @throws UnsupportedOperationException if the store is a snapshot
+	 */
+	public void addAll(BetterDynamicArray<AudioEvent> sortedEvents) {
+		beginChange();
+		// Split the batch by channel so each index can be merged in one pass.
+		BetterDynamicArray<BetterDynamicArray<AudioEvent>> batches = new BetterDynamicArray<>();
+		for(int i = 0; i < sortedEvents.size(); i++) {
+			AudioEvent event = sortedEvents.get(i);
+			getChannelEvents(event.getChannel());
+			while(batches.size() <= event.getChannel())
+				batches.add(null);
+			if(batches.get(event.getChannel()) == null)
+				batches.set(event.getChannel(), new BetterDynamicArray<AudioEvent>());
+			batches.get(event.getChannel()).add(event);
+		}
+
+		events.mergeSorted(sortedEvents);
+		for(int i = 0; i < batches.size(); i++)
+			if(batches.get(i) != null)
+				channels.get(i).mergeSorted(batches.get(i));
+	}
+
+	/**
+	 * Removes the first event equal to the given event.
+	 * If the event is not in the store, nothing is changed.
+	 *
+	 * @param event - to remove
+	 * @return true if an event was removed
+	 * @throws UnsupportedOperationException if the store is a snapshot
+	 */
+	public boolean remove(AudioEvent event) {
+		int index = indexOf(events, event);
+		if(index < 0)
+			return false;
+		beginChange();
+		events.remove(index);
+		ChunkedArray<AudioEvent> channel = channels.get(event.getChannel());
+		channel.remove(indexOf(channel, event));
+		return true;
+	}
+
+	/**
+	 * Checks whether the store holds an event equal to the given event.
+	 * Only events at the same time as the given event are compared.
+	 *
+	 * @param event - to look for
+	 * @return true if the event is in the store
+	 */
+	public boolean contains(AudioEvent event) {
+		return indexOf(events, event) >= 0;
+	}
+
+	/**
+	 * Removes all events.
+	 *
+	 * @throws UnsupportedOperationException if the store is a snapshot
+	 */
+	public void clear() {
+		if(readOnly)
+			throw new UnsupportedOperationException("Snapshots can't be changed");
+		modCount++;
+		events.clear();
+		channels.clear();
+	}
+
+	/**
+	 * Counts a change. The lists copy whatever blocks a snapshot shares
+	 * as they change.
+	 *
+	 * @throws UnsupportedOperationException if the store is a snapshot
+	 */
+	private void beginChange() {
+		if(readOnly)
+			throw new UnsupportedOperationException("Snapshots can't be changed");
+		modCount++;
+	}
+
+	/**
+	 * Gets the index of the first event at or after a given time.
+	 *
+	 * @param time - in tics
+	 * @return index of the first event with a time of at least the given time,
+	 *         or the size of the store if there is none
+	 */
+	public int indexAtTime(int time) {
+		return lowerBound(events, time);
+	}
+
+	/**
+	 * Gets all events with a time in the range [startTime, endTime).
+	 *
+	 * @param startTime - earliest time to include
+	 * @param endTime - first time to exclude
+	 * @return the events in time order
+	 */
+	public BetterDynamicArray<AudioEvent> getRange(int startTime, int endTime) {
+		return copyRange(events, startTime, endTime);
+	}
+
+	/**
+	 * Gets all events on a channel with a time in the range [startTime, endTime).
+	 *
+	 * @param channel - of the events
+	 * @param startTime - earliest time to include
+	 * @param endTime - first time to exclude
+	 * @return the events in time order
+	 */
+	public BetterDynamicArray<AudioEvent> getRange(int channel, int startTime, int endTime) {
+		if(channel < 0 || channel >= channels.size())
+			return new BetterDynamicArray<>();
+		return copyRange(channels.get(channel), startTime, endTime);
+	}
+
+	/**
+	 * Finds the first NoteEvent at a given time with a given pitch.
+	 *
+	 * @param time - of the note
+	 * @param pitch - of the note
+	 * @return the note, or null if there is none
+	 */
+	public NoteEvent findNote(int time, int pitch) {
+		for(int i = lowerBound(events, time); i < events.size() && events.get(i).getTime() == time; i++) {
+			AudioEvent event = events.get(i);
+			if(event instanceof NoteEvent && ((NoteEvent)event).getPitch() == pitch)
+				return (NoteEvent)event;
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the sorted index for a channel, creating it if needed.
+	 *
+	 * @param channel - to get the events of
+	 * @return the sorted events on that channel
+	 * @throws IllegalArgumentException if the channel is negative
+	 */
+	private ChunkedArray<AudioEvent> getChannelEvents(int channel) {
+		if(channel < 0)
+			throw new IllegalArgumentException("Invalid channel");
+		while(channels.size() <= channel)
+			channels.add(new ChunkedArray<AudioEvent>());
+		return channels.get(channel);
+	}
+
+	/**
+	 * Copies the events in [startTime, endTime) from a sorted list.
+	 *
+	 * @param list - sorted events
+	 * @param startTime - earliest time to include
+	 * @param endTime - first time to exclude
+	 * @return the events in time order
+	 */
+	private static BetterDynamicArray<AudioEvent> copyRange(ChunkedArray<AudioEvent> list,
+			int startTime, int endTime) {
+		int start = lowerBound(list, startTime);
+		return list.getRange(start, Math.max(start, lowerBound(list, endTime)));
+	}
+
+	/**
+	 * Finds the index of the first event equal to the given event in a sorted list.
+	 * Only events with the same time are compared.
+	 *
+	 * @param list - sorted events
+	 * @param event - to find
+	 * @return the index, or -1 if it is not in the list
+	 */
+	private static int indexOf(ChunkedArray<AudioEvent> list, AudioEvent event) {
+		for(int i = lowerBound(list, event.getTime()); i < list.size() && list.get(i).getTime() == event.getTime(); i++)
+			if(list.get(i).equals(event))
+				return i;
+		return -1;
+	}
+
+	/**
+	 * Binary searches a sorted list for the first event at or after a time.
+	 *
+	 * @param list - sorted events
+	 * @param time - in tics
+	 * @return index of the first event with a time of at least the given time
+	 */
+	private static int lowerBound(ChunkedArray<AudioEvent> list, int time) {
+		int low = 0;
+		int high = list.size();
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(list.get(mid).getTime() < time)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+}
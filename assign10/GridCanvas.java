@@ -3,31 +3,47 @@ package assign10;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
+import java.util.TreeMap;
 
 import javax.swing.JPanel;
+import javax.swing.JViewport;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
 
 /**
  * A grid of rectangles that can be clicked and dragged to draw cells.
  * Creating or removing a cell results in some task being performed. 
  * That task must be specified by the subclass.
  * 
+ * The grid can be larger than the space it is shown in. Inside a
+ * JScrollPane only the visible rows, columns, and cells are drawn, so
+ * very long grids cost no more to paint than short ones.
+ * 
  * @author Eric Heisler and River Whitten
  * @version 2024-11-9
  */
-public abstract class GridCanvas extends JPanel implements MouseListener, MouseMotionListener {
+public abstract class GridCanvas extends JPanel implements MouseListener, MouseMotionListener, Scrollable {
 	
 	// Grid information
 	private int width, height;
+	private int viewportWidth, viewportHeight; // size to show when scrolled
 	private int columns, rows;
 	private int columnMajorTickSpacing, rowMajorTickSpacing;
 	private int rowRestriction, colRestriction;
 	
 	// The collection of cells (active, colored rectangles)
 	// Note that Cell is a nested class at the end of this file
-	private BetterDynamicArray<Cell> cells;
+	// Cells are indexed by the row they start in, and each row is sorted by
+	// starting column, so finding the cells in an area only looks at the
+	// rows and columns that area covers.
+	private TreeMap<Integer, BetterDynamicArray<Cell>> cellRows;
+	private int maxRowSpan, maxColSpan; // largest span of any cell, for area queries
 	
 	// Feel free to change coloring however you want.
 	// To get started, just set one color in the constructor.
@@ -36,6 +52,17 @@ public abstract class GridCanvas extends JPanel implements MouseListener, MouseM
 	// These are useful for keeping track of a cell currently being drawn.
 	private boolean drawing;
 	private int currentRow, currentColumn, currentWidth, currentHeight;
+	private Rectangle previewBounds; // where the preview cell was last drawn, or null
+	
+	// The visible part of the grid and cells is drawn once into this image
+	// and copied to the screen on each paint. It is rebuilt only when the
+	// grid or cells change or the visible part of the grid moves.
+	private BufferedImage background;
+	private Rectangle backgroundBounds; // area of the component the image covers
+	private boolean backgroundValid;
+	
+	// Limits for zooming, in pixels per column
+	private static final int MAX_COLUMN_PIXELS = 64;
 	
 	/**
 	 * Construct a grid with a given configuration.
@@ -51,6 +78,8 @@ public abstract class GridCanvas extends JPanel implements MouseListener, MouseM
 							int rowMajorTickSpacing, int columnMajorTickSpacing) {
 		this.width = width;
 		this.height = height;
+		this.viewportWidth = width;
+		this.viewportHeight = height;
 		this.rows = rows;
 		this.columns = columns;
 		this.rowMajorTickSpacing = rowMajorTickSpacing;
@@ -64,7 +93,13 @@ public abstract class GridCanvas extends JPanel implements MouseListener, MouseM
 		currentHeight = -1;
 		rowRestriction = -1;
 		colRestriction = -1;
-		cells = new BetterDynamicArray<Cell>();
+		cellRows = new TreeMap<Integer, BetterDynamicArray<Cell>>();
+		maxRowSpan = 1;
+		maxColSpan = 1;
+		previewBounds = null;
+		background = null;
+		backgroundBounds = new Rectangle();
+		backgroundValid = false;
 
 		// TODO set preferred size, background color, and mouse listeners
 		setPreferredSize(new Dimension(width, height));
@@ -78,6 +113,8 @@ public abstract class GridCanvas extends JPanel implements MouseListener, MouseM
 	 * Set the number of columns in the grid.
 	 * Then repaint the component.
 	 * If the number is < 1, set to 1.
+	 * Cells that start in a column that no longer exists are removed,
+	 * and onCellRemoved is called for each of them.
 	 * 
 	 * @param columns - new number of columns
 	 */
@@ -86,14 +123,20 @@ public abstract class GridCanvas extends JPanel implements MouseListener, MouseM
 		if (newColumns < 1) {
 			newColumns = 1;
 		}
+		this.columns = newColumns;
 		
-		for(int i = 0; i < cells.size(); i++) {
-			if (cells.get(i).col >= this.columns) {
-				cells.remove(i);
-				i--;
-			}
+		// Each row is sorted by column, so the cells to remove are at its end.
+		BetterDynamicArray<Cell> removed = new BetterDynamicArray<Cell>();
+		for(BetterDynamicArray<Cell> row : cellRows.values()) {
+			int keep = lowerBound(row, this.columns);
+			for(int i = keep; i < row.size(); i++)
+				removed.add(row.get(i));
+			row.removeRange(keep, row.size());
 		}
-		repaint();
+		cellRows.values().removeIf(row -> row.size() == 0);
+		for(int i = 0; i < removed.size(); i++)
+			onCellRemoved(removed.get(i).row, removed.get(i).col);
+		invalidateBackground();
 	}
 	
 	public int getColumns() {
@@ -104,6 +147,8 @@ public abstract class GridCanvas extends JPanel implements MouseListener, MouseM
 	 * Set the number of rows in the grid.
 	 * Then repaint the component.
 	 * If the number is < 1, set to 1.
+	 * Cells in a row that no longer exists are removed, and
+	 * onCellRemoved is called for each of them.
 	 * 
 	 * @param rows - new number of rows
 	 */
@@ -112,19 +157,58 @@ public abstract class GridCanvas extends JPanel implements MouseListener, MouseM
 		if(newRows < 1) {
 			newRows = 1;
 		}
-		for(int i = 0; i < cells.size(); i++) {
-			if(cells.get(i).row >= this.rows) {
-				cells.remove(i);
-				i--;
-			}
-		}
-		repaint();
+		this.rows = newRows;
+		
+		BetterDynamicArray<Cell> removed = new BetterDynamicArray<Cell>();
+		for(BetterDynamicArray<Cell> row : cellRows.tailMap(this.rows).values())
+			removed.addAll(row);
+		cellRows.tailMap(this.rows).clear();
+		for(int i = 0; i < removed.size(); i++)
+			onCellRemoved(removed.get(i).row, removed.get(i).col);
+		invalidateBackground();
 	}
 	
 	public int getRows() {
 		return rows;
 	}
 	
+	/**
+	 * Sets the size of the whole grid in pixels.
+	 * When the grid is inside a JScrollPane, this is the size that scrolls.
+	 * 
+	 * @param newWidth - of grid in pixels
+	 * @param newHeight - of grid in pixels
+	 */
+	public void setGridSize(int newWidth, int newHeight) {
+		width = Math.max(1, newWidth);
+		height = Math.max(1, newHeight);
+		setPreferredSize(new Dimension(width, height));
+		revalidate();
+		invalidateBackground();
+	}
+	
+	public int getGridWidth() {
+		return width;
+	}
+	
+	public int getGridHeight() {
+		return height;
+	}
+	
+	/**
+	 * Stretches or shrinks the grid horizontally.
+	 * The grid is never narrower than its original width
+	 * or wider than 64 pixels per column.
+	 * 
+	 * @param factor - to multiply the width by
+	 */
+	public void zoom(double factor) {
+		long maxWidth = Math.max(viewportWidth, (long)columns * MAX_COLUMN_PIXELS);
+		long newWidth = Math.round(width * factor);
+		newWidth = Math.max(viewportWidth, Math.min(maxWidth, newWidth));
+		setGridSize((int)newWidth, height);
+	}
+	
 	/**
 	 * Set restrictions for the width or height of cells.
 	 * Setting to a non-positive number means that dimension is not restricted.
@@ -152,6 +236,8 @@ public abstract class GridCanvas extends JPanel implements MouseListener, MouseM
 	 * Adds a cell to the collection with the given position and size.
 	 * Then repaints the component.
 	 * This is where colors can be set.
+	 * The cell is drawn straight onto the cached background, since cells
+	 * are drawn after the grid anyway, and only its area is repainted.
 	 * 
 	 * @param row - vertical position of cell
 	 * @param column - horizontal position of cell
@@ -161,8 +247,24 @@ public abstract class GridCanvas extends JPanel implements MouseListener, MouseM
 	public void addCell(int row, int column, int height, int width) {
 		// TODO construct Cell, add to collection, then repaint
 		Cell cell = new Cell(row, column, height, width, cellColor);
-		cells.add(cell);
-		repaint();
+		BetterDynamicArray<Cell> cellRow = cellRows.get(row);
+		if(cellRow == null) {
+			cellRow = new BetterDynamicArray<Cell>();
+			cellRows.put(row, cellRow);
+		}
+		cellRow.insertSorted(cell);
+		maxRowSpan = Math.max(maxRowSpan, height);
+		maxColSpan = Math.max(maxColSpan, width);
+		if(backgroundValid) {
+			Graphics g = background.getGraphics();
+			g.translate(-backgroundBounds.x, -backgroundBounds.y);
+			drawCell(g, cell);
+			g.dispose();
+			repaint(cellBounds(cell));
+		}
+		else {
+			repaint();
+		}
 	}
 	
 	/**
@@ -171,8 +273,10 @@ public abstract class GridCanvas extends JPanel implements MouseListener, MouseM
 	 */
 	public void clear() {
 		// TODO
-		cells.clear();
-		repaint();
+		cellRows.clear();
+		maxRowSpan = 1;
+		maxColSpan = 1;
+		invalidateBackground();
 	}
 
 	/**
@@ -181,28 +285,82 @@ public abstract class GridCanvas extends JPanel implements MouseListener, MouseM
 	 * the size of the component changes (including resizing by the user) --when
 	 * repaint() is called
 	 * 
-	 * Partially overrides the paintComponent method of JPanel.
+	 * Copies the cached grid and cells, then draws the preview cell.
+	 * Overrides the paintComponent method of JPanel.
 	 * 
 	 * @param g -- graphics context to draw onto
 	 */
 	public void paintComponent(Graphics g) {
-		// Call parent JPanel's paintComponent method to fill in panel 
-		// with background color. "partial overriding"
-		super.paintComponent(g);
+		// The cached background covers the visible part of the component,
+		// so JPanel's paintComponent is not needed to fill in the background color.
+		Rectangle visible = getVisibleRect();
+		if(!backgroundValid || !visible.equals(backgroundBounds))
+			rebuildBackground(visible);
+		
+		// Only the part inside the clip rectangle is actually copied.
+		g.drawImage(background, backgroundBounds.x, backgroundBounds.y, null);
 
+		// If the mouse is currently making a cell, draw it as a preview.
+		if(drawing) {
+			g.setColor(cellColor.darker());
+			Rectangle preview = previewBounds();
+			g.fillRect(preview.x, preview.y, preview.width, preview.height);
+		}
+	}
+	
+	/**
+	 * Marks the cached background as out of date and repaints the component.
+	 * The background is rebuilt on the next paint.
+	 */
+	private void invalidateBackground() {
+		backgroundValid = false;
+		repaint();
+	}
+	
+	/**
+	 * Draws the grid lines, major ticks, and cells in an area of the
+	 * component into the cached background, making a new image if the
+	 * area changed size. Rows, columns, and cells outside the area are skipped.
+	 * 
+	 * @param area - of the component to draw, normally the visible part
+	 */
+	private void rebuildBackground(Rectangle area) {
+		int imageWidth = Math.max(1, area.width);
+		int imageHeight = Math.max(1, area.height);
+		if(background == null || background.getWidth() != imageWidth || background.getHeight() != imageHeight) {
+			GraphicsConfiguration config = getGraphicsConfiguration();
+			if(config != null)
+				background = config.createCompatibleImage(imageWidth, imageHeight);
+			else
+				background = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_RGB);
+		}
+		backgroundBounds = new Rectangle(area.x, area.y, imageWidth, imageHeight);
+		
+		Graphics g = background.getGraphics();
+		g.translate(-area.x, -area.y);
+		g.setColor(getBackground());
+		g.fillRect(area.x, area.y, imageWidth, imageHeight);
+		
+		// Rows and columns whose lines can touch the area, with a margin for
+		// rounding in the pixel conversions and the width of major ticks.
+		// Rows are counted up from the bottom edge.
+		int firstRow = clamp(pixelToRow(area.y + imageHeight) - 2, 0, rows);
+		int lastRow = clamp(pixelToRow(area.y) + 2, 0, rows);
+		int firstCol = clamp(pixelToCol(area.x) - 1, 0, columns);
+		int lastCol = clamp(pixelToCol(area.x + imageWidth) + 2, 0, columns);
 		
 		// Draw the grid by drawing lines between each row and column (use g.drawLine).
 		// Don't forget to set the color first.
 		// Make use of the private helpers below to convert between row/column and pixel x/y.
 		g.setColor(Color.LIGHT_GRAY);
-		for(int i = 0; i <= rows; i++) {
+		for(int i = firstRow; i <= lastRow; i++) {
 			int y = rowToPixel(i);
-			g.drawLine(0,  y,  getWidth(),  y); // Horizontal lines
+			g.drawLine(area.x,  y,  area.x + imageWidth,  y); // Horizontal lines
 		}
 		
-		for(int i = 0; i <= columns; i++) {
+		for(int i = firstCol; i <= lastCol; i++) {
 			int x = colToPixel(i);
-			g.drawLine(x,  0,  x,  getHeight()); //Vertical Lines
+			g.drawLine(x,  area.y,  x,  area.y + imageHeight); //Vertical Lines
 		}
 		
 
@@ -210,42 +368,109 @@ public abstract class GridCanvas extends JPanel implements MouseListener, MouseM
 		// different thickness. Thickness can be achieved by using fillRect with 
 		// a narrow rectangle instead of drawLine.
 		g.setColor(Color.GRAY);
-		for(int i = 0; i <= rows; i += rowMajorTickSpacing) {
+		for(int i = firstMajorTick(firstRow, rowMajorTickSpacing); i <= lastRow; i += rowMajorTickSpacing) {
 			int y = rowToPixel(i);
-			g.fillRect(0, y-1, getWidth(), 2); //Thicker horizontal lines
+			g.fillRect(area.x, y-1, imageWidth, 2); //Thicker horizontal lines
 		}
 
 		// Draw the major column ticks.
-		for(int i = 0; i <= columns; i += columnMajorTickSpacing) {
+		for(int i = firstMajorTick(firstCol, columnMajorTickSpacing); i <= lastCol; i += columnMajorTickSpacing) {
 			int x = colToPixel(i);
-			g.fillRect(x - 1, 0, 2, getHeight()); //Thick vertical lines
+			g.fillRect(x - 1, area.y, 2, imageHeight); //Thick vertical lines
 		}
 		
 
-		// Draw all cells in the collection. Don't forget to set the color first.
-		g.setColor(cellColor);
-		for(int i = 0; i < cells.size(); i ++) {
-			Cell cell = cells.get(i);
-			int x = colToPixel(cell.col);
-			int y= rowToPixel(cell.row + cell.rowSpan);
-			int cellWidth = colToPixel(cell.col + cell.colSpan) - x;
-			int cellHeight = rowToPixel(cell.row) - y;
-			g.fillRect(x, y, cellWidth, cellHeight);
+		// Draw the cells that overlap the area, with a margin of one
+		// row and column for rounding in the pixel conversions.
+		int top = pixelToRow(area.y);
+		int bottom = pixelToRow(area.y + imageHeight - 1);
+		BetterDynamicArray<Cell> visible = cellsIn(Math.min(top, bottom) - 1, Math.max(top, bottom) + 1,
+				pixelToCol(area.x) - 1, pixelToCol(area.x + imageWidth - 1) + 1);
+		for(int i = 0; i < visible.size(); i ++) {
+			drawCell(g, visible.get(i));
 		}
-		
-
-		// If the mouse is currently making a cell, draw it as a preview.
+		g.dispose();
+		backgroundValid = true;
+	}
+	
+	/**
+	 * Finds the first major tick at or after an index.
+	 * 
+	 * @param index - row or column index, not negative
+	 * @param spacing - between major ticks
+	 * @return index of the tick
+	 */
+	private static int firstMajorTick(int index, int spacing) {
+		return (index + spacing - 1) / spacing * spacing;
+	}
+	
+	/**
+	 * Limits a value to a range.
+	 * 
+	 * @param value - to limit
+	 * @param min - smallest allowed value
+	 * @param max - largest allowed value
+	 * @return the value, or the closest end of the range
+	 */
+	private static int clamp(int value, int min, int max) {
+		return Math.max(min, Math.min(max, value));
+	}
+	
+	/**
+	 * Draws one cell in its color.
+	 * 
+	 * @param g - graphics context to draw onto
+	 * @param cell - to draw
+	 */
+	private void drawCell(Graphics g, Cell cell) {
+		g.setColor(cell.color);
+		Rectangle bounds = cellBounds(cell);
+		g.fillRect(bounds.x, bounds.y, bounds.width, bounds.height);
+	}
+	
+	/**
+	 * Gets the pixel area covered by a cell.
+	 * 
+	 * @param cell - to measure
+	 * @return area of the cell
+	 */
+	private Rectangle cellBounds(Cell cell) {
+		int x = colToPixel(cell.col);
+		int y= rowToPixel(cell.row + cell.rowSpan);
+		int cellWidth = colToPixel(cell.col + cell.colSpan) - x;
+		int cellHeight = rowToPixel(cell.row) - y;
+		return new Rectangle(x, y, cellWidth, cellHeight);
+	}
+	
+	/**
+	 * Gets the pixel area covered by the preview cell.
+	 * 
+	 * @return area of the preview, with a negative width or height if
+	 * the preview is empty
+	 */
+	private Rectangle previewBounds() {
+		int x = colToPixel(currentColumn);
+		int y= rowToPixel(currentRow + currentHeight);
+		int cellWidth = colToPixel(currentColumn + currentWidth) - x;
+		int cellHeight = rowToPixel(currentRow) - y;
+		return new Rectangle(x, y, cellWidth, cellHeight);
+	}
+	
+	/**
+	 * Repaints only the area where the preview cell was and now is.
+	 */
+	private void repaintPreview() {
+		Rectangle bounds = null;
 		if(drawing) {
-			g.setColor(cellColor.darker());
-			int x = colToPixel(currentColumn);
-			int y= rowToPixel(currentRow + currentHeight);
-			int cellWidth = colToPixel(currentColumn + currentWidth) - x;
-			int cellHeight = rowToPixel(currentRow) - y;
-			g.fillRect(x, y, cellWidth, cellHeight);
-		
+			Rectangle preview = previewBounds();
+			if(preview.width > 0 && preview.height > 0)
+				bounds = preview;
 		}
-		
-		
+		if(previewBounds != null)
+			repaint(bounds == null ? previewBounds : previewBounds.union(bounds));
+		else if(bounds != null)
+			repaint(bounds);
+		previewBounds = bounds;
 	}
 	
 	//////////////////////////////////////////////////////////////////////
@@ -296,6 +521,57 @@ public abstract class GridCanvas extends JPanel implements MouseListener, MouseM
 	 */
 	public abstract void onCellRemoved(int row, int col);
 	
+	//////////////////////////////////////////////////////////////////////
+	// The following are methods from the Scrollable interface.
+	// They let a JScrollPane scroll the grid one row or column at a time.
+	//////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * The viewport starts at the size the grid was created with.
+	 */
+	@Override
+	public Dimension getPreferredScrollableViewportSize() {
+		return new Dimension(viewportWidth, viewportHeight);
+	}
+
+	/**
+	 * Scrolls by one row or column, rounded up to a whole pixel.
+	 */
+	@Override
+	public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+		if(orientation == SwingConstants.HORIZONTAL)
+			return Math.max(1, (width + columns - 1) / columns);
+		return Math.max(1, (height + rows - 1) / rows);
+	}
+
+	/**
+	 * Scrolls by the visible width or height, less one row or column
+	 * so that some of the previous view stays in sight.
+	 */
+	@Override
+	public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+		int unit = getScrollableUnitIncrement(visibleRect, orientation, direction);
+		if(orientation == SwingConstants.HORIZONTAL)
+			return Math.max(unit, visibleRect.width - unit);
+		return Math.max(unit, visibleRect.height - unit);
+	}
+
+	/**
+	 * Fills the viewport's width when the grid is narrower than it.
+	 */
+	@Override
+	public boolean getScrollableTracksViewportWidth() {
+		return getParent() instanceof JViewport && getParent().getWidth() > width;
+	}
+
+	/**
+	 * Fills the viewport's height when the grid is shorter than it.
+	 */
+	@Override
+	public boolean getScrollableTracksViewportHeight() {
+		return getParent() instanceof JViewport && getParent().getHeight() > height;
+	}
+	
 	//////////////////////////////////////////////////////////////////////
 	// The following are methods from the mouse listening interfaces.
 	// They are used for drawing cells. Note that they each call one
@@ -316,7 +592,7 @@ public abstract class GridCanvas extends JPanel implements MouseListener, MouseM
 			currentHeight = Math.max(1, rowRestriction);
 			currentWidth = Math.max(1, colRestriction);
 			onCellPressed(currentRow, currentColumn, currentHeight, currentWidth);
-			repaint();
+			repaintPreview();
 		}
 	}
 	
@@ -341,8 +617,8 @@ public abstract class GridCanvas extends JPanel implements MouseListener, MouseM
 			else
 				currentWidth = pixelToCol(e.getX()) - currentColumn + 1;
 			onCellDragged(currentRow, currentColumn, currentHeight, currentWidth);
+			repaintPreview();
 		}
-		repaint();
 	}
 	
 	/**
@@ -362,7 +638,7 @@ public abstract class GridCanvas extends JPanel implements MouseListener, MouseM
 			currentWidth = -1;
 			currentHeight = -1;
 			drawing = false;
-			repaint();
+			repaintPreview();
 		}
 	}
 	
@@ -378,13 +654,17 @@ public abstract class GridCanvas extends JPanel implements MouseListener, MouseM
 			// remove all cells from the list with this row and column
 			int row = pixelToRow(e.getY());
 			int col = pixelToCol(e.getX());
-			for(int i = 0; i < cells.size(); i++)
-				if(cells.get(i).row == row && cells.get(i).col == col) {
-					cells.remove(i);
-					i--;
+			BetterDynamicArray<Cell> cellRow = cellRows.get(row);
+			if(cellRow != null) {
+				int i = lowerBound(cellRow, col);
+				while(i < cellRow.size() && cellRow.get(i).col == col) {
+					cellRow.remove(i);
 				}
+				if(cellRow.size() == 0)
+					cellRows.remove(row);
+			}
 			onCellRemoved(row, col);
-			repaint();
+			invalidateBackground();
 		}
 	}
 	
@@ -412,7 +692,7 @@ public abstract class GridCanvas extends JPanel implements MouseListener, MouseM
 	 * @return pixel y value of the top edge
 	 */
 	private int rowToPixel(int row) {
-		return height - row * height / rows;
+		return height - (int)((long)row * height / rows);
 	}
 	
 	/**
@@ -422,7 +702,7 @@ public abstract class GridCanvas extends JPanel implements MouseListener, MouseM
 	 * @return pixel x value of the left side
 	 */
 	private int colToPixel(int col) {
-		return col * width / (columns);
+		return (int)((long)col * width / columns);
 	}
 	
 	/**
@@ -432,7 +712,7 @@ public abstract class GridCanvas extends JPanel implements MouseListener, MouseM
 	 * @return index of row containing that pixel
 	 */
 	private int pixelToRow(int py) {
-		return rows * (height - 1 - py) / height;
+		return (int)((long)rows * (height - 1 - py) / height);
 	}
 	
 	/**
@@ -442,13 +722,62 @@ public abstract class GridCanvas extends JPanel implements MouseListener, MouseM
 	 * @return index of column containing that pixel
 	 */
 	private int pixelToCol(int px) {
-		return columns * px / width;
+		return (int)((long)columns * px / width);
+	}
+	
+	/**
+	 * Finds the cells that overlap an area of the grid.
+	 * Only the rows that could hold such a cell are looked at, and within
+	 * each row a binary search skips to the first column that could overlap.
+	 * 
+	 * @param firstRow - lowest row of the area
+	 * @param lastRow - highest row of the area, inclusive
+	 * @param firstCol - leftmost column of the area
+	 * @param lastCol - rightmost column of the area, inclusive
+	 * @return the overlapping cells
+	 */
+	private BetterDynamicArray<Cell> cellsIn(int firstRow, int lastRow, int firstCol, int lastCol) {
+		BetterDynamicArray<Cell> found = new BetterDynamicArray<Cell>();
+		if(firstRow > lastRow || firstCol > lastCol)
+			return found;
+		for(BetterDynamicArray<Cell> cellRow : cellRows.subMap(firstRow - maxRowSpan + 1, true, lastRow, true).values()) {
+			for(int i = lowerBound(cellRow, firstCol - maxColSpan + 1); i < cellRow.size(); i++) {
+				Cell cell = cellRow.get(i);
+				if(cell.col > lastCol)
+					break;
+				if(cell.col + cell.colSpan > firstCol && cell.row + cell.rowSpan > firstRow)
+					found.add(cell);
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * Finds the first cell in a row that starts at or after a column.
+	 * 
+	 * @param cellRow - cells sorted by column
+	 * @param col - column to search for
+	 * @return index of the first cell with a column at least col,
+	 * or the size of the row if there is none
+	 */
+	private static int lowerBound(BetterDynamicArray<Cell> cellRow, int col) {
+		int low = 0;
+		int high = cellRow.size();
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(cellRow.get(mid).col < col)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
 	}
 	
 	/**
 	 * Represents a colored cell in the grid.
+	 * Cells are ordered by column within a row.
 	 */
-	private class Cell {
+	private class Cell implements Comparable<Cell> {
 		public int row;
 		public int col;
 		public int rowSpan;
@@ -470,6 +799,11 @@ public abstract class GridCanvas extends JPanel implements MouseListener, MouseM
 			this.rowSpan = rowSpan;
 			this.colSpan = colSpan;
 		}
+		
+		@Override
+		public int compareTo(Cell other) {
+			return Integer.compare(col, other.col);
+		}
 	}
 
 	// Required by a serializable class (ignore for now)
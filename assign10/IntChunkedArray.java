@@ -0,0 +1,324 @@
+package assign10;
+import java.util.Arrays;
+
+
+/**
+ * A list of ints kept in blocks, the same way ChunkedArray keeps elements.
+ * Inserting or removing shifts only one block, and after a snapshot a
+ * change copies only the directory and the block it touches.
+ *
+ * Arrays that receive the same sequence of inserts and removes split and
+ * join their blocks at the same places, so parallel arrays stay cheap to
+ * change together.
+ *
+ * @author River Whitten
+ * @version 11.22.24
+ */
+public class IntChunkedArray {
+
+	// Most values a block holds before it is split in two
+	private static final int BLOCK_SIZE = 1024;
+
+	private int[][] blocks; // blocks of values, each filled from the start
+	private int[] blockStarts; // index of the first value of each block
+	private Object[] blockOwners; // the owner that may change each block in place
+	private int blockCount;
+	private int valueCount;
+	private Object owner; // stands for this array; replaced when a snapshot is taken
+	private boolean shared; // true while a snapshot uses the same directory
+
+	/**
+	 * Creates an empty array.
+	 */
+	public IntChunkedArray() {
+		blocks = new int[4][];
+		blockStarts = new int[4];
+		blockOwners = new Object[4];
+		owner = new Object();
+	}
+
+	/**
+	 * Creates a snapshot that shares another array's blocks and directory.
+	 *
+	 * @param other - array to take a snapshot of
+	 */
+	private IntChunkedArray(IntChunkedArray other) {
+		blocks = other.blocks;
+		blockStarts = other.blockStarts;
+		blockOwners = other.blockOwners;
+		blockCount = other.blockCount;
+		valueCount = other.valueCount;
+		owner = new Object();
+		shared = true;
+	}
+
+	/**
+	 * Gets a copy of this array that later changes to either one do not
+	 * affect. This takes constant time; the next change to either array
+	 * copies what it touches.
+	 *
+	 * @return the copy
+	 */
+	public IntChunkedArray snapshot() {
+		shared = true;
+		owner = new Object(); // every block now belongs to the snapshot too
+		return new IntChunkedArray(this);
+	}
+
+	/**
+	 * Returns the number of values in this array.
+	 *
+	 * @return the number of values
+	 */
+	public int size() {
+		return valueCount;
+	}
+
+	/**
+	 * Gets the value at the given index.
+	 *
+	 * @param index - the index of the value to get
+	 * @return the value at the given index
+	 * @throws IndexOutOfBoundsException if the given index is out of bounds
+	 */
+	public int get(int index) {
+		if(index < 0 || index >= valueCount) {
+			throw new IndexOutOfBoundsException();
+		}
+		int block = blockOf(index);
+		return blocks[block][index - blockStarts[block]];
+	}
+
+	/**
+	 * Appends the given value to the end of this array.
+	 *
+	 * @param value - the value to append
+	 */
+	public void add(int value) {
+		insert(valueCount, value);
+	}
+
+	/**
+	 * Inserts a given value at a given index.
+	 *
+	 * @param index - the index at which to insert
+	 * @param value - the value to insert
+	 * @throws IndexOutOfBoundsException if the given index is out of bounds
+	 */
+	public void insert(int index, int value) {
+		if(index < 0 || index > valueCount) {
+			throw new IndexOutOfBoundsException();
+		}
+		beginChange();
+		if(blockCount == 0)
+			insertBlock(0, new int[8], 0);
+		int block = index == valueCount ? blockCount - 1 : blockOf(index);
+		if(blockSize(block) == BLOCK_SIZE) {
+			split(block);
+			if(index > blockStarts[block + 1])
+				block++;
+		}
+		int[] values = writableBlock(block, blockSize(block) + 1);
+		int offset = index - blockStarts[block];
+		System.arraycopy(values, offset, values, offset + 1, blockSize(block) - offset);
+		values[offset] = value;
+		for(int i = block + 1; i < blockCount; i++)
+			blockStarts[i]++;
+		valueCount++;
+	}
+
+	/**
+	 * Inserts a value into this sorted array, keeping it sorted.
+	 * The value is placed after any values equal to it.
+	 *
+	 * @param value - the value to insert
+	 * @return the index at which the value was inserted
+	 */
+	public int insertSorted(int value) {
+		// Find the last block that starts with a value not greater than the given one.
+		int low = 0;
+		int high = blockCount;
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(blocks[mid][0] <= value)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		int index = 0;
+		if(low > 0) {
+			int[] values = blocks[low - 1];
+			int from = 0;
+			int to = blockSize(low - 1);
+			while(from < to) {
+				int mid = (from + to) >>> 1;
+				if(values[mid] <= value)
+					from = mid + 1;
+				else
+					to = mid;
+			}
+			index = blockStarts[low - 1] + from;
+		}
+		insert(index, value);
+		return index;
+	}
+
+	/**
+	 * Removes the value at the given index.
+	 * A block left empty is dropped, and a block left small is joined
+	 * with the next one, so blocks stay reasonably full.
+	 *
+	 * @param index - the index of the value to remove
+	 * @throws IndexOutOfBoundsException if the given index is out of bounds
+	 */
+	public void remove(int index) {
+		if(index < 0 || index >= valueCount) {
+			throw new IndexOutOfBoundsException();
+		}
+		beginChange();
+		int block = blockOf(index);
+		int size = blockSize(block);
+		int[] values = writableBlock(block, size);
+		int offset = index - blockStarts[block];
+		System.arraycopy(values, offset + 1, values, offset, size - offset - 1);
+		for(int i = block + 1; i < blockCount; i++)
+			blockStarts[i]--;
+		valueCount--;
+
+		if(size == 1) {
+			removeBlock(block);
+		} else if(block + 1 < blockCount && blockSize(block) + blockSize(block + 1) <= BLOCK_SIZE / 2) {
+			int first = blockSize(block);
+			int second = blockSize(block + 1);
+			values = writableBlock(block, first + second);
+			System.arraycopy(blocks[block + 1], 0, values, first, second);
+			removeBlock(block + 1);
+		}
+	}
+
+	/**
+	 * Removes all values. Blocks shared with a snapshot are left to it.
+	 */
+	public void clear() {
+		blocks = new int[4][];
+		blockStarts = new int[4];
+		blockOwners = new Object[4];
+		blockCount = 0;
+		valueCount = 0;
+		shared = false;
+	}
+
+	/**
+	 * Finds the block holding an index.
+	 *
+	 * @param index - of a value
+	 * @return the last block starting at or before the index
+	 */
+	private int blockOf(int index) {
+		int low = 0;
+		int high = blockCount - 1;
+		while(low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if(blockStarts[mid] <= index)
+				low = mid;
+			else
+				high = mid - 1;
+		}
+		return low;
+	}
+
+	/**
+	 * Gets the number of values in a block.
+	 *
+	 * @param block - index of the block
+	 * @return its number of values
+	 */
+	private int blockSize(int block) {
+		int end = block + 1 < blockCount ? blockStarts[block + 1] : valueCount;
+		return end - blockStarts[block];
+	}
+
+	/**
+	 * Copies the directory if a snapshot shares it.
+	 */
+	private void beginChange() {
+		if(!shared)
+			return;
+		int capacity = Math.max(4, blockCount + 1);
+		blocks = Arrays.copyOf(blocks, capacity);
+		blockStarts = Arrays.copyOf(blockStarts, capacity);
+		blockOwners = Arrays.copyOf(blockOwners, capacity);
+		shared = false;
+	}
+
+	/**
+	 * Gets a block that can be changed in place, copying it first if a
+	 * snapshot may share it, with room for at least the given number of values.
+	 *
+	 * @param block - index of the block
+	 * @param minCapacity - number of values that must fit
+	 * @return the block's values
+	 */
+	private int[] writableBlock(int block, int minCapacity) {
+		int[] values = blocks[block];
+		if(blockOwners[block] != owner || values.length < minCapacity) {
+			int capacity = values.length;
+			if(capacity < minCapacity)
+				capacity = Math.min(BLOCK_SIZE, Math.max(minCapacity, capacity * 2));
+			values = Arrays.copyOf(values, capacity);
+			blocks[block] = values;
+			blockOwners[block] = owner;
+		}
+		return values;
+	}
+
+	/**
+	 * Moves the second half of a full block into a new block after it.
+	 *
+	 * @param block - index of the block
+	 */
+	private void split(int block) {
+		int size = blockSize(block);
+		int half = size / 2;
+		int[] second = new int[BLOCK_SIZE];
+		System.arraycopy(blocks[block], half, second, 0, size - half);
+		insertBlock(block + 1, second, blockStarts[block] + half);
+	}
+
+	/**
+	 * Adds a block owned by this array to the directory.
+	 *
+	 * @param block - index for the new block
+	 * @param values - its values
+	 * @param start - index of its first value
+	 */
+	private void insertBlock(int block, int[] values, int start) {
+		if(blockCount == blocks.length) {
+			int capacity = blockCount * 2;
+			blocks = Arrays.copyOf(blocks, capacity);
+			blockStarts = Arrays.copyOf(blockStarts, capacity);
+			blockOwners = Arrays.copyOf(blockOwners, capacity);
+		}
+		System.arraycopy(blocks, block, blocks, block + 1, blockCount - block);
+		System.arraycopy(blockStarts, block, blockStarts, block + 1, blockCount - block);
+		System.arraycopy(blockOwners, block, blockOwners, block + 1, blockCount - block);
+		blocks[block] = values;
+		blockStarts[block] = start;
+		blockOwners[block] = owner;
+		blockCount++;
+	}
+
+	/**
+	 * Removes a block from the directory.
+	 *
+	 * @param block - index of the block
+	 */
+	private void removeBlock(int block) {
+		System.arraycopy(blocks, block + 1, blocks, block, blockCount - block - 1);
+		System.arraycopy(blockStarts, block + 1, blockStarts, block, blockCount - block - 1);
+		System.arraycopy(blockOwners, block + 1, blockOwners, block, blockCount - block - 1);
+		blockCount--;
+		blocks[blockCount] = null;
+		blockOwners[blockCount] = null;
+	}
+}
@@ -0,0 +1,269 @@
+package assign10;
+import java.util.Arrays;
+
+
+/**
+ * A dynamic array of int values, like BetterDynamicArray but storing the
+ * values directly in an int[] instead of as boxed objects. Use it for
+ * numbers such as tic times, pitches, or channels, where boxing would add
+ * an object per element.
+ * 
+ * The backing array grows by a growth factor (doubling by default) when more
+ * space is needed. Removing elements keeps its capacity, so an array that is
+ * emptied and filled again over and over doesn't reallocate; trimToSize
+ * gives the space back. Elements are shifted with System.arraycopy.
+ * 
+ * @author River Whitten
+ * @version 11.22.24
+ */
+public class IntDynamicArray {
+
+	private int[] elements; // the backing array
+	private int elementCount; // the number of elements
+	private int initialCapacity; // trimToSize never shrinks the backing array below this
+	private double growthFactor; // how much the backing array grows by
+
+	/**
+	 * Creates a dynamic array with space for ten elements, but zero spaces occupied.
+	 */
+	public IntDynamicArray() {
+		this(10, 2.0);
+	}
+	
+	/**
+	 * Creates an empty dynamic array with a given starting capacity and growth factor.
+	 * 
+	 * @param initialCapacity - space for elements before the backing array grows
+	 * @param growthFactor - what the capacity is multiplied by when it grows
+	 * @throws IllegalArgumentException if the capacity is negative or the factor is not greater than 1
+	 */
+	public IntDynamicArray(int initialCapacity, double growthFactor) {
+		if(initialCapacity < 0)
+			throw new IllegalArgumentException("Negative capacity: " + initialCapacity);
+		if(!(growthFactor > 1.0))
+			throw new IllegalArgumentException("Growth factor must be greater than 1: " + growthFactor);
+		this.initialCapacity = Math.max(1, initialCapacity);
+		this.growthFactor = growthFactor;
+		elements = new int[this.initialCapacity];
+		elementCount = 0;
+	}
+
+	/**
+	 * Appends the given value to end of this dynamic array.
+	 * 
+	 * @param value - the value to append
+	 */
+	public void add(int value) {
+		if(elementCount == elements.length) 
+			ensureCapacity(elementCount + 1);
+		elements[elementCount++] = value;
+	}
+
+	/**
+	 * Inserts a given value into this dynamic array at a given index.
+	 * 
+	 * @param index - the index at which to insert
+	 * @param value - the value to insert
+	 * @throws IndexOutOfBoundsException if the given index is out of bounds
+	 */
+	public void insert(int index, int value) {
+		if(index < 0 || index > elementCount) {
+			throw new IndexOutOfBoundsException();
+		}
+		if(elementCount == elements.length) 
+			ensureCapacity(elementCount + 1);
+		System.arraycopy(elements, index, elements, index + 1, elementCount - index);
+		elements[index] = value;
+		elementCount++;
+	}
+	
+	/**
+	 * Appends all elements of another dynamic array to the end of this one,
+	 * growing the backing array at most once.
+	 * 
+	 * @param other - the elements to append
+	 */
+	public void addAll(IntDynamicArray other) {
+		ensureCapacity(elementCount + other.elementCount);
+		System.arraycopy(other.elements, 0, elements, elementCount, other.elementCount);
+		elementCount += other.elementCount;
+	}
+
+	/**
+	 * Gets the value stored in this dynamic array at the given index.
+	 * 
+	 * @param index - the index of the element to get
+	 * @return the element at the given index
+	 * @throws IndexOutOfBoundsException if the given index is out of bounds
+	 */
+	public int get(int index) {
+		if(index < 0 || index >= elementCount) {
+			throw new IndexOutOfBoundsException();
+		}
+		return elements[index];
+	}
+
+	/**
+	 * Returns the number of elements in this dynamic array.
+	 * 
+	 * @return the number of elements
+	 */
+	public int size() {
+		return elementCount; 
+	}
+
+	/**
+	 * Changes the value stored in this dynamic array at the given index.
+	 * 
+	 * @param index - the index of the element to set
+	 * @param value - the new value for the element
+	 * @throws IndexOutOfBoundsException if the given index is out of bounds
+	 */
+	public void set(int index, int value) {
+		if (index < 0 || index >= elementCount) {
+			throw new IndexOutOfBoundsException();
+		}
+		elements[index] = value;
+	}
+
+	/**
+	 * Removes the value at the given index from this dynamic array. 
+	 * 
+	 * @param index - the index of the element to delete
+	 * @throws IndexOutOfBoundsException if the given index is out of bounds
+	 */
+	public void remove(int index) {
+		if(index < 0 || index >= elementCount) {
+			throw new IndexOutOfBoundsException();
+		}
+		System.arraycopy(elements, index + 1, elements, index, elementCount - index - 1);
+		elementCount--;
+	}
+	
+	/**
+	 * Removes the elements in the range [fromIndex, toIndex), shifting later
+	 * elements down with a single array copy.
+	 * 
+	 * @param fromIndex - index of the first element to remove
+	 * @param toIndex - index after the last element to remove
+	 * @throws IndexOutOfBoundsException if the range is out of bounds
+	 */
+	public void removeRange(int fromIndex, int toIndex) {
+		if(fromIndex < 0 || toIndex > elementCount || fromIndex > toIndex) {
+			throw new IndexOutOfBoundsException();
+		}
+		System.arraycopy(elements, toIndex, elements, fromIndex, elementCount - toIndex);
+		elementCount -= toIndex - fromIndex;
+	}
+	
+	/**
+	 * Removes all elements from the dynamic array. The backing array keeps
+	 * its capacity; call trimToSize to shrink it.
+	 */
+	public void clear() {
+		elementCount = 0;
+	}
+	
+	/**
+	 * Sorts the elements of this dynamic array from smallest to largest.
+	 */
+	public void sort() {
+		Arrays.sort(elements, 0, elementCount);
+	}
+	
+	/**
+	 * Determines whether the elements are in order from smallest to largest.
+	 * 
+	 * @return true if no element is greater than the element after it
+	 */
+	public boolean isSorted() {
+		for(int i = 1; i < elementCount; i++) {
+			if(elements[i - 1] > elements[i])
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Searches this sorted dynamic array for a value.
+	 * If there are several equal elements, any one of them may be found.
+	 * 
+	 * @param value - the value to find
+	 * @return the index of the value if it is found, otherwise
+	 * (-(insertion point) - 1), as with Arrays.binarySearch
+	 */
+	public int binarySearch(int value) {
+		return Arrays.binarySearch(elements, 0, elementCount, value);
+	}
+	
+	/**
+	 * Inserts a value into this sorted dynamic array, keeping it sorted.
+	 * The value is placed after any elements equal to it.
+	 * 
+	 * @param value - the value to insert
+	 * @return the index at which the value was inserted
+	 */
+	public int insertSorted(int value) {
+		int low = 0;
+		int high = elementCount;
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(elements[mid] <= value)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		insert(low, value);
+		return low;
+	}
+	
+	/**
+	 * Makes sure the backing array can hold at least the given number of
+	 * elements without growing again. If it must grow, it grows by the
+	 * growth factor or to the given capacity, whichever is larger.
+	 * 
+	 * @param minCapacity - the number of elements that must fit
+	 */
+	public void ensureCapacity(int minCapacity) {
+		if(minCapacity <= elements.length)
+			return;
+		long grown = (long)(elements.length * growthFactor);
+		int newCapacity = (int)Math.min(Integer.MAX_VALUE - 8, Math.max(grown, elements.length + 1L));
+		elements = Arrays.copyOf(elements, Math.max(minCapacity, newCapacity));
+	}
+	
+	/**
+	 * Shrinks the backing array to the number of elements, or to the
+	 * initial capacity if that is larger. Use after filling an array that
+	 * won't grow again, or after clearing one that won't be filled again.
+	 */
+	public void trimToSize() {
+		int capacity = Math.max(initialCapacity, elementCount);
+		if(capacity < elements.length)
+			elements = Arrays.copyOf(elements, capacity);
+	}
+	
+	/**
+	 * Copies the elements into a new array of exactly the right length.
+	 * 
+	 * @return the elements in order
+	 */
+	public int[] toArray() {
+		return Arrays.copyOf(elements, elementCount);
+	}
+
+	/**
+	 * Generates a textual representation of this dynamic array.
+	 * 
+	 * @return the textual representation
+	 */
+	public String toString() {
+		StringBuilder result = new StringBuilder("[");
+		for(int i = 0; i < elementCount; i++) {
+			if(i > 0)
+				result.append(", ");
+			result.append(elements[i]);
+		}
+		return result.append("] backing array length: ").append(elements.length).toString();
+	}
+}
@@ -0,0 +1,253 @@
+package assign10;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A song file that is memory-mapped rather than read into objects.
+ * Opening a file maps it and reads its header, without reading any notes
+ * or creating an object per note, so it takes the same time however large
+ * the file is. The notes of each channel are a NoteTable that reads straight
+ * from the mapped region, which a SimpleSequencer can play with setNotes.
+ *
+ * The file is a header followed by one 16-byte record per note. The records
+ * are grouped by channel, in channel order, and sorted by time within each
+ * channel. The header ends with a directory giving the index of the first
+ * record of each channel, and then the note count, so the notes of a channel
+ * are found without looking at the records. All values are big-endian ints,
+ * channels go from 0 to 15, and the file can't be larger than 2 GB, the most
+ * that can be mapped at once.
+ * <pre>
+ * header: magic "SKCH", format version, song length in tics, note count,
+ *         first record of each of the 16 channels, note count again
+ * record: time, duration, pitch, channel
+ * </pre>
+ *
+ * Only the header is checked when the file is opened. The records are read
+ * as they are played, and nothing stops a damaged file from holding a note
+ * with a negative time or one out of time order, which plays as soon as it
+ * is reached, or a negative duration, which ends the note right away.
+ *
+ * @author River Whitten
+ * @version 11.22.24
+ */
+public class MappedSong {
+
+	// Number of channels a song file has notes for
+	public static final int CHANNELS = 16;
+
+	private static final int MAGIC = 0x534B4348; // "SKCH"
+	private static final int VERSION = 2;
+	private static final int DIRECTORY = 16; // where the first record of each channel is given
+	private static final int HEADER_SIZE = DIRECTORY + (CHANNELS + 1) * 4;
+	private static final int RECORD_SIZE = 16;
+
+	private MappedByteBuffer buffer;
+	private int length;
+	private int noteCount;
+	private SimpleSynthesizer synthesizer;
+
+	/**
+	 * Creates a song over an already checked mapping.
+	 *
+	 * @param buffer - mapping of the whole file
+	 * @param synthesizer - to play notes on
+	 */
+	private MappedSong(MappedByteBuffer buffer, SimpleSynthesizer synthesizer) {
+		this.buffer = buffer;
+		this.synthesizer = synthesizer;
+		length = buffer.getInt(8);
+		noteCount = buffer.getInt(12);
+	}
+
+	/**
+	 * Maps a song file for reading and checks its header. This takes
+	 * constant time, since the notes themselves are not read.
+	 *
+	 * @param file - to open
+	 * @param synthesizer - to play the notes on
+	 * @return the song in the file
+	 * @throws IOException if the file can't be read, is not a song file, or has a damaged header
+	 */
+	public static MappedSong open(File file, SimpleSynthesizer synthesizer) throws IOException {
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if(size < DIRECTORY)
+				throw new IOException("Not a song file: " + file);
+			if(size > Integer.MAX_VALUE)
+				throw new IOException("Song file is too large to open: " + file);
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			if(buffer.getInt(0) != MAGIC)
+				throw new IOException("Not a song file: " + file);
+			if(buffer.getInt(4) != VERSION)
+				throw new IOException("Unsupported song file version " + buffer.getInt(4));
+			if(buffer.getInt(8) < 0)
+				throw new IOException("Song file has a negative length: " + file);
+			int count = buffer.getInt(12);
+			if(count < 0 || size < HEADER_SIZE + (long)count * RECORD_SIZE)
+				throw new IOException("Song file is truncated: " + file);
+			int previous = 0;
+			for(int i = 0; i <= CHANNELS; i++) {
+				int first = buffer.getInt(DIRECTORY + i * 4);
+				if(first < previous || first > count || (i == 0 && first != 0) || (i == CHANNELS && first != count))
+					throw new IOException("Song file has a damaged channel directory: " + file);
+				previous = first;
+			}
+			return new MappedSong(buffer, synthesizer);
+		}
+	}
+
+	/**
+	 * Writes the notes of a table to a song file, replacing the file if it exists.
+	 * This takes linear time: one pass counts the notes of each channel,
+	 * and another writes each note into its channel's records.
+	 *
+	 * @param file - to write
+	 * @param length - of the song in tics
+	 * @param notes - to write, sorted by time
+	 * @throws IOException if the file can't be written or would be too large to open
+	 * @throws IllegalArgumentException if a note's channel is not from 0 to 15
+	 */
+	public static void write(File file, int length, NoteTable notes) throws IOException {
+		long size = HEADER_SIZE + (long)notes.size() * RECORD_SIZE;
+		if(size > Integer.MAX_VALUE)
+			throw new IOException("Too many notes for a song file: " + notes.size());
+		int[] next = new int[CHANNELS + 1]; // first record of each channel, then of the end
+		for(int i = 0; i < notes.size(); i++) {
+			int channel = notes.getChannel(i);
+			if(channel < 0 || channel >= CHANNELS)
+				throw new IllegalArgumentException("Song files only hold channels 0 to 15, not " + channel);
+			next[channel + 1]++;
+		}
+		for(int i = 1; i <= CHANNELS; i++)
+			next[i] += next[i - 1];
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt(length);
+			buffer.putInt(notes.size());
+			for(int i = 0; i <= CHANNELS; i++)
+				buffer.putInt(next[i]);
+			for(int i = 0; i < notes.size(); i++) {
+				int record = HEADER_SIZE + next[notes.getChannel(i)]++ * RECORD_SIZE;
+				buffer.putInt(record, notes.getTime(i));
+				buffer.putInt(record + 4, notes.getDuration(i));
+				buffer.putInt(record + 8, notes.getPitch(i));
+				buffer.putInt(record + 12, notes.getChannel(i));
+			}
+			buffer.force();
+		}
+	}
+
+	/**
+	 * Writes every note played by a sequencer to a song file.
+	 * This includes NoteEvents in the sequence and notes in its note store.
+	 *
+	 * @param file - to write
+	 * @param sequencer - whose notes to write
+	 * @throws IOException if the file can't be written
+	 * @throws IllegalArgumentException if a note's channel is not from 0 to 15
+	 */
+	public static void write(File file, SimpleSequencer sequencer) throws IOException {
+		NoteStore notes = new NoteStore(null);
+		for(AudioEvent event : sequencer.snapshot())
+			if(event instanceof NoteEvent)
+				notes.add((NoteEvent)event);
+		write(file, sequencer.getLength(), notes);
+	}
+
+	/**
+	 * Gets the length of the song stored in the file header.
+	 *
+	 * @return length in tics
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Gets the number of notes in the song, on every channel.
+	 *
+	 * @return number of notes
+	 */
+	public int size() {
+		return noteCount;
+	}
+
+	/**
+	 * Gets the notes of one channel, which are read from the file as they
+	 * are used. This takes constant time.
+	 *
+	 * @param channel - from 0 to 15
+	 * @return the notes of the channel, sorted by time
+	 * @throws IndexOutOfBoundsException if there is no such channel
+	 */
+	public NoteTable getNotes(int channel) {
+		if(channel < 0 || channel >= CHANNELS)
+			throw new IndexOutOfBoundsException("No channel " + channel);
+		int first = buffer.getInt(DIRECTORY + channel * 4);
+		return new ChannelNotes(channel, first, buffer.getInt(DIRECTORY + channel * 4 + 4) - first);
+	}
+
+	/**
+	 * The records of one channel, read from the mapping as they are used.
+	 * Each note reports the channel it is filed under.
+	 */
+	private class ChannelNotes extends NoteTable {
+		private final int channel;
+		private final int first; // index of the channel's first record
+		private final int count;
+
+		/**
+		 * Creates a table over a range of records.
+		 *
+		 * @param channel - the records are filed under
+		 * @param first - index of the first record
+		 * @param count - number of records
+		 */
+		private ChannelNotes(int channel, int first, int count) {
+			this.channel = channel;
+			this.first = first;
+			this.count = count;
+		}
+
+		@Override
+		public int size() {
+			return count;
+		}
+
+		@Override
+		public SimpleSynthesizer getSynthesizer() {
+			return synthesizer;
+		}
+
+		@Override
+		public int getTime(int index) {
+			checkIndex(index);
+			return buffer.getInt(HEADER_SIZE + (first + index) * RECORD_SIZE);
+		}
+
+		@Override
+		public int getDuration(int index) {
+			checkIndex(index);
+			return buffer.getInt(HEADER_SIZE + (first + index) * RECORD_SIZE + 4);
+		}
+
+		@Override
+		public int getPitch(int index) {
+			checkIndex(index);
+			return buffer.getInt(HEADER_SIZE + (first + index) * RECORD_SIZE + 8);
+		}
+
+		@Override
+		public int getChannel(int index) {
+			checkIndex(index);
+			return channel;
+		}
+	}
+}
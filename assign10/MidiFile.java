@@ -0,0 +1,465 @@
+package assign10;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Reads and writes Standard MIDI Files (type 0 and type 1).
+ *
+ * Reading streams through the file once. Notes and changes are handed to a
+ * BatchHandler in small sorted batches as soon as they are complete, so the
+ * whole file is never held in memory. Each batch belongs to a part, which is
+ * one of the tracks of a type 1 file that contains events, or one channel of
+ * a type 0 file. The events of a part use the part number as their channel,
+ * so part n can go straight to track n.
+ *
+ * Times are converted from MIDI ticks to tics by rounding to the nearest
+ * beat, since a tic is one beat in this program. Notes are at least one tic long.
+ *
+ * @author River Whitten
+ * @version 11.22.24
+ */
+public class MidiFile {
+
+	// Number of events collected for a part before the batch is handed over
+	private static final int BATCH_SIZE = 256;
+	// Ticks per quarter note used when writing
+	private static final int WRITE_DIVISION = 480;
+	private static final int VELOCITY = 100;
+	private static final int MAX_PARTS = 16;
+
+	/**
+	 * Receives events as a MIDI file is read.
+	 */
+	public interface BatchHandler {
+		/**
+		 * Called with a batch of events for one part.
+		 * The batch is sorted, but later batches may contain earlier events.
+		 *
+		 * @param part - index of the part, from 0 to 15
+		 * @param batch - the events, which now belong to the handler
+		 */
+		void onBatch(int part, BetterDynamicArray<AudioEvent> batch);
+
+		/**
+		 * Called for each tempo change in the file. The changes of one part
+		 * come in time order, and a file without any starts at 120 beats per minute.
+		 *
+		 * @param time - in tics, where the tempo changes
+		 * @param beatsPerMinute - the tempo from that time on
+		 */
+		default void onTempo(int time, double beatsPerMinute) {}
+	}
+
+	/**
+	 * Reads a MIDI file, handing its notes and changes to a handler in batches.
+	 * Volume changes become "volume" ChangeEvents, and pitch bends become
+	 * "pitch bend" ChangeEvents centered on zero.
+	 *
+	 * @param input - to read the file from
+	 * @param synthesizer - for the created events to play on
+	 * @param handler - to receive the events
+	 * @throws IOException if the file can't be read or is not a supported MIDI file
+	 */
+	public static void read(InputStream input, SimpleSynthesizer synthesizer, BatchHandler handler) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+		if(in.readInt() != 0x4D546864) // "MThd"
+			throw new IOException("Not a MIDI file");
+		int headerLength = in.readInt();
+		int format = in.readUnsignedShort();
+		int trackCount = in.readUnsignedShort();
+		int division = in.readShort();
+		in.skipNBytes(headerLength - 6);
+		if(format > 1)
+			throw new IOException("Unsupported MIDI file type " + format);
+		if(division <= 0)
+			throw new IOException("SMPTE time division is not supported");
+
+		Reader reader = new Reader(synthesizer, handler, division, format == 0);
+		for(int track = 0; track < trackCount; track++) {
+			int chunkType = in.readInt();
+			long chunkLength = in.readInt() & 0xFFFFFFFFL;
+			if(chunkType != 0x4D54726B) { // "MTrk"
+				in.skipNBytes(chunkLength);
+				track--;
+				continue;
+			}
+			reader.readTrack(in, chunkLength);
+		}
+	}
+
+	/**
+	 * Writes a type 1 MIDI file with one track per sequencer.
+	 * The first track only holds the tempo. Sequencer n is written on channel n,
+	 * and its NoteEvents, volume changes, and pitch bends are included.
+	 *
+	 * @param output - to write the file to
+	 * @param parts - the sequencers to write, at most 16
+	 * @param beatsPerMinute - tempo of the song
+	 * @throws IOException if the file can't be written
+	 * @throws IllegalArgumentException if there are more than 16 parts
+	 */
+	public static void write(OutputStream output, BetterDynamicArray<SimpleSequencer> parts, int beatsPerMinute)
+			throws IOException {
+		if(parts.size() > MAX_PARTS)
+			throw new IllegalArgumentException("At most " + MAX_PARTS + " parts can be written");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+		out.writeInt(0x4D546864); // "MThd"
+		out.writeInt(6);
+		out.writeShort(1);
+		out.writeShort(parts.size() + 1);
+		out.writeShort(WRITE_DIVISION);
+
+		// Tempo track
+		ByteArrayOutputStream track = new ByteArrayOutputStream();
+		int microsPerBeat = 60_000_000 / beatsPerMinute;
+		writeVariableLength(track, 0);
+		track.write(new byte[] {(byte)0xFF, 0x51, 3,
+				(byte)(microsPerBeat >> 16), (byte)(microsPerBeat >> 8), (byte)microsPerBeat}, 0, 6);
+		writeEndOfTrack(track, 0);
+		writeTrack(out, track);
+
+		for(int part = 0; part < parts.size(); part++) {
+			track.reset();
+			writePart(track, parts.get(part), part);
+			writeTrack(out, track);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Writes the events of one sequencer as the contents of a track chunk.
+	 * Messages are packed into longs and sorted so that, at the same time,
+	 * note offs and changes come before note ons.
+	 *
+	 * @param track - to write the events to
+	 * @param sequencer - whose events to write
+	 * @param channel - to write the events on
+	 */
+	private static void writePart(ByteArrayOutputStream track, SimpleSequencer sequencer, int channel) {
+		LongDynamicArray messages = new LongDynamicArray(64, 2.0);
+		for(AudioEvent event : sequencer.snapshot()) {
+			long tick = (long)event.getTime() * WRITE_DIVISION;
+			if(event instanceof NoteEvent) {
+				NoteEvent note = (NoteEvent)event;
+				int pitch = note.getPitch() & 0x7F;
+				long end = tick + (long)note.getDuration() * WRITE_DIVISION;
+				messages.add(packMessage(tick, 1, 0x90 | channel, pitch, VELOCITY));
+				messages.add(packMessage(end, 0, 0x80 | channel, pitch, 0));
+			} else if(event instanceof ChangeEvent) {
+				ChangeEvent change = (ChangeEvent)event;
+				if(change.getName().equals("volume")) {
+					int volume = Math.max(0, Math.min(127, change.getValue()));
+					messages.add(packMessage(tick, 0, 0xB0 | channel, 7, volume));
+				} else if(change.getName().equals("pitch bend")) {
+					int bend = Math.max(0, Math.min(16383, change.getValue() + 8192));
+					messages.add(packMessage(tick, 0, 0xE0 | channel, bend & 0x7F, bend >> 7));
+				}
+			}
+		}
+		messages.sort();
+
+		long previousTick = 0;
+		for(int i = 0; i < messages.size(); i++) {
+			long message = messages.get(i);
+			long tick = message >>> 25;
+			writeVariableLength(track, tick - previousTick);
+			track.write((int)(message >> 16) & 0xFF);
+			track.write((int)(message >> 8) & 0xFF);
+			track.write((int)message & 0xFF);
+			previousTick = tick;
+		}
+		long lengthTick = (long)sequencer.getLength() * WRITE_DIVISION;
+		writeEndOfTrack(track, Math.max(0, lengthTick - previousTick));
+	}
+
+	/**
+	 * Packs a three-byte channel message and its time into a long that
+	 * sorts by time, then by order.
+	 *
+	 * @param tick - time of the message
+	 * @param order - 0 for messages that go first at the same time, 1 otherwise
+	 * @param status - status byte
+	 * @param data1 - first data byte
+	 * @param data2 - second data byte
+	 * @return the packed message
+	 */
+	private static long packMessage(long tick, int order, int status, int data1, int data2) {
+		return (tick << 25) | ((long)order << 24) | (status << 16) | (data1 << 8) | data2;
+	}
+
+	/**
+	 * Writes an end of track meta event.
+	 *
+	 * @param track - to write to
+	 * @param delta - ticks since the previous event
+	 */
+	private static void writeEndOfTrack(ByteArrayOutputStream track, long delta) {
+		writeVariableLength(track, delta);
+		track.write(0xFF);
+		track.write(0x2F);
+		track.write(0);
+	}
+
+	/**
+	 * Writes a track chunk with the given contents.
+	 *
+	 * @param out - to write the chunk to
+	 * @param track - contents of the chunk
+	 * @throws IOException if the chunk can't be written
+	 */
+	private static void writeTrack(DataOutputStream out, ByteArrayOutputStream track) throws IOException {
+		out.writeInt(0x4D54726B); // "MTrk"
+		out.writeInt(track.size());
+		track.writeTo(out);
+	}
+
+	/**
+	 * Writes a number as a MIDI variable-length quantity.
+	 *
+	 * @param out - to write to
+	 * @param value - to write, which must not be negative
+	 */
+	private static void writeVariableLength(ByteArrayOutputStream out, long value) {
+		int shift = 0;
+		while((value >> (shift + 7)) != 0 && shift < 21)
+			shift += 7;
+		for(; shift > 0; shift -= 7)
+			out.write((int)((value >> shift) & 0x7F) | 0x80);
+		out.write((int)(value & 0x7F));
+	}
+
+	/**
+	 * The state of reading a MIDI file, which lasts across its tracks.
+	 */
+	private static class Reader {
+		private SimpleSynthesizer synthesizer;
+		private BatchHandler handler;
+		private int division;
+		private boolean splitByChannel;
+		private int nextPart;
+
+		// For the current track
+		private int[] channelParts; // part for each MIDI channel, or -1
+		private long[] noteStarts; // start tick for each channel and pitch, or -1
+		private BetterDynamicArray<BetterDynamicArray<AudioEvent>> batches;
+
+		/**
+		 * Creates a reader.
+		 *
+		 * @param synthesizer - for the created events to play on
+		 * @param handler - to receive events
+		 * @param division - ticks per quarter note
+		 * @param splitByChannel - true to make a part for each channel, false for each track
+		 */
+		public Reader(SimpleSynthesizer synthesizer, BatchHandler handler, int division, boolean splitByChannel) {
+			this.synthesizer = synthesizer;
+			this.handler = handler;
+			this.division = division;
+			this.splitByChannel = splitByChannel;
+			nextPart = 0;
+			channelParts = new int[16];
+			noteStarts = new long[16 * 128];
+			batches = new BetterDynamicArray<>();
+			for(int i = 0; i < MAX_PARTS; i++)
+				batches.add(new BetterDynamicArray<AudioEvent>());
+		}
+
+		/**
+		 * Reads the events of one track chunk.
+		 *
+		 * @param in - positioned at the start of the track's events
+		 * @param chunkLength - number of bytes in the track
+		 * @throws IOException if the track can't be read
+		 */
+		public void readTrack(DataInputStream in, long chunkLength) throws IOException {
+			Arrays.fill(channelParts, -1);
+			Arrays.fill(noteStarts, -1);
+			int trackPart = -1;
+
+			long[] remaining = {chunkLength};
+			long tick = 0;
+			int status = 0;
+			while(remaining[0] > 0) {
+				tick += readVariableLength(in, remaining);
+				int data = readByte(in, remaining);
+				if(data >= 0x80) {
+					status = data;
+					if(status < 0xF0)
+						data = readByte(in, remaining);
+				} else if(status == 0) {
+					throw new IOException("Missing MIDI status byte");
+				}
+
+				if(status == 0xFF) {
+					int type = readByte(in, remaining);
+					long length = readVariableLength(in, remaining);
+					if(type == 0x51 && length == 3) {
+						int micros = (readByte(in, remaining) << 16) | (readByte(in, remaining) << 8) | readByte(in, remaining);
+						if(micros > 0)
+							handler.onTempo(toTics(tick), 60_000_000.0 / micros);
+					} else {
+						skip(in, length, remaining);
+					}
+					status = 0; // meta and system events cancel running status
+					continue;
+				}
+				if(status == 0xF0 || status == 0xF7) {
+					skip(in, readVariableLength(in, remaining), remaining);
+					status = 0;
+					continue;
+				}
+
+				int command = status & 0xF0;
+				int channel = status & 0x0F;
+				int data2 = 0;
+				if(command != 0xC0 && command != 0xD0)
+					data2 = readByte(in, remaining);
+
+				if(command != 0x90 && command != 0x80 && command != 0xB0 && command != 0xE0)
+					continue;
+				// Find the part for this channel
+				if(channelParts[channel] < 0) {
+					if(!splitByChannel && trackPart >= 0)
+						channelParts[channel] = trackPart;
+					else if(nextPart < MAX_PARTS)
+						channelParts[channel] = nextPart++;
+					else
+						continue;
+					trackPart = channelParts[channel];
+				}
+				int part = channelParts[channel];
+
+				if(command == 0x90 && data2 > 0) {
+					endNote(part, channel, data, tick);
+					noteStarts[channel * 128 + data] = tick;
+				} else if(command == 0x90 || command == 0x80) {
+					endNote(part, channel, data, tick);
+				} else if(command == 0xB0 && data == 7) {
+					addEvent(part, new ChangeEvent(toTics(tick), "volume", part, data2, synthesizer));
+				} else if(command == 0xE0) {
+					int bend = ((data2 << 7) | data) - 8192;
+					addEvent(part, new ChangeEvent(toTics(tick), "pitch bend", part, bend, synthesizer));
+				}
+			}
+
+			// Close notes that were never turned off, then hand over what is left.
+			for(int i = 0; i < noteStarts.length; i++)
+				if(noteStarts[i] >= 0 && channelParts[i / 128] >= 0)
+					endNote(channelParts[i / 128], i / 128, i % 128, tick);
+			for(int part = 0; part < MAX_PARTS; part++)
+				flush(part);
+		}
+
+		/**
+		 * Ends a sounding note, if there is one, and records it as a NoteEvent.
+		 *
+		 * @param part - the note belongs to
+		 * @param channel - MIDI channel of the note
+		 * @param pitch - of the note
+		 * @param tick - when the note ends
+		 */
+		private void endNote(int part, int channel, int pitch, long tick) {
+			long start = noteStarts[channel * 128 + pitch];
+			if(start < 0)
+				return;
+			noteStarts[channel * 128 + pitch] = -1;
+			int time = toTics(start);
+			int duration = Math.max(1, toTics(tick) - time);
+			addEvent(part, new NoteEvent(time, "Note", part, duration, pitch, synthesizer));
+		}
+
+		/**
+		 * Adds an event to a part's batch, handing the batch over when it is full.
+		 *
+		 * @param part - the event belongs to
+		 * @param event - to add
+		 */
+		private void addEvent(int part, AudioEvent event) {
+			batches.get(part).add(event);
+			if(batches.get(part).size() >= BATCH_SIZE)
+				flush(part);
+		}
+
+		/**
+		 * Sorts and hands over a part's batch if it has any events.
+		 *
+		 * @param part - whose batch to hand over
+		 */
+		private void flush(int part) {
+			BetterDynamicArray<AudioEvent> batch = batches.get(part);
+			if(batch.size() == 0)
+				return;
+			batch.sort();
+			handler.onBatch(part, batch);
+			batches.set(part, new BetterDynamicArray<AudioEvent>());
+		}
+
+		/**
+		 * Converts MIDI ticks to tics, rounding to the nearest beat.
+		 *
+		 * @param tick - MIDI time
+		 * @return time in tics
+		 */
+		private int toTics(long tick) {
+			return (int)((tick + division / 2) / division);
+		}
+
+		/**
+		 * Reads one byte of a track.
+		 *
+		 * @param in - to read from
+		 * @param remaining - bytes left in the track, which is decreased
+		 * @return the byte, from 0 to 255
+		 * @throws IOException if the track ends early
+		 */
+		private static int readByte(DataInputStream in, long[] remaining) throws IOException {
+			if(remaining[0] <= 0)
+				throw new EOFException("MIDI track ended in the middle of an event");
+			remaining[0]--;
+			return in.readUnsignedByte();
+		}
+
+		/**
+		 * Reads a MIDI variable-length quantity.
+		 *
+		 * @param in - to read from
+		 * @param remaining - bytes left in the track, which is decreased
+		 * @return the value
+		 * @throws IOException if the track ends early
+		 */
+		private static long readVariableLength(DataInputStream in, long[] remaining) throws IOException {
+			long value = 0;
+			for(int i = 0; i < 4; i++) {
+				int data = readByte(in, remaining);
+				value = (value << 7) | (data & 0x7F);
+				if((data & 0x80) == 0)
+					break;
+			}
+			return value;
+		}
+
+		/**
+		 * Skips bytes of a track.
+		 *
+		 * @param in - to read from
+		 * @param count - number of bytes to skip
+		 * @param remaining - bytes left in the track, which is decreased
+		 * @throws IOException if the track ends early
+		 */
+		private static void skip(DataInputStream in, long count, long[] remaining) throws IOException {
+			if(count > remaining[0])
+				throw new EOFException("MIDI track ended in the middle of an event");
+			in.skipNBytes(count);
+			remaining[0] -= count;
+		}
+	}
+}
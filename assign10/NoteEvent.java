@@ -45,6 +45,15 @@ public class NoteEvent extends AudioEvent {
         return pitch;
     }
 
+    /**
+     * Returns the synthesizer that plays the note.
+     *
+     * @return the synthesizer
+     */
+    public SimpleSynthesizer getSynthesizer() {
+        return synthesizer;
+    }
+
     /**
      * Executes the note event by printing its details.
      * 
@@ -90,7 +99,7 @@ public class NoteEvent extends AudioEvent {
         if (other instanceof ChangeEvent) {
             return 1;
         }
-        if (other instanceof TrackEvent) {
+        if (other instanceof TrackEvent || other instanceof PatternInstance) {
             return -1;
         }
         return 0;
@@ -0,0 +1,226 @@
+package assign10;
+
+/**
+ * A compact, editable collection of notes kept sorted by time.
+ * Instead of one NoteEvent object per note, the time, duration, pitch, and
+ * channel of every note are kept in parallel IntChunkedArrays, which uses several
+ * times less memory and lets playback read notes without following references.
+ *
+ * A snapshot shares the store's arrays, and a later change copies only the
+ * blocks it touches, the same way EventStore does.
+ *
+ * @author River Whitten
+ * @version 11.22.24
+ */
+public class NoteStore extends NoteTable {
+
+	private IntChunkedArray times;
+	private IntChunkedArray durations;
+	private IntChunkedArray pitches;
+	private IntChunkedArray channels;
+	private SimpleSynthesizer synthesizer;
+	private int modCount; // number of changes made
+	private boolean readOnly; // true for snapshots
+
+	/**
+	 * Creates an empty store whose notes play on the given synthesizer.
+	 *
+	 * @param synthesizer - to play notes on
+	 */
+	public NoteStore(SimpleSynthesizer synthesizer) {
+		this.synthesizer = synthesizer;
+		times = new IntChunkedArray();
+		durations = new IntChunkedArray();
+		pitches = new IntChunkedArray();
+		channels = new IntChunkedArray();
+	}
+
+	/**
+	 * Creates a read-only snapshot that shares the given store's arrays.
+	 *
+	 * @param store - to take a snapshot of
+	 */
+	private NoteStore(NoteStore store) {
+		synthesizer = store.synthesizer;
+		times = store.times.snapshot();
+		durations = store.durations.snapshot();
+		pitches = store.pitches.snapshot();
+		channels = store.channels.snapshot();
+		modCount = store.modCount;
+		readOnly = true;
+	}
+
+	/**
+	 * Gets a snapshot of the store that later changes to the store do not affect.
+	 * This takes constant time; the next change to the store copies only the
+	 * blocks it touches.
+	 *
+	 * @return a read-only store with the same notes
+	 */
+	@Override
+	public NoteStore snapshot() {
+		if(readOnly)
+			return this;
+		return new NoteStore(this);
+	}
+
+	/**
+	 * Checks whether the store is a snapshot, which can't be changed.
+	 *
+	 * @return true for a snapshot
+	 */
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	/**
+	 * Gets the number of changes made to the store.
+	 *
+	 * @return the change count
+	 */
+	@Override
+	public int getModCount() {
+		return modCount;
+	}
+
+	/**
+	 * Gets the number of notes in the store.
+	 *
+	 * @return number of notes
+	 */
+	@Override
+	public int size() {
+		return times.size();
+	}
+
+	/**
+	 * Gets the synthesizer the notes play on.
+	 *
+	 * @return the synthesizer
+	 */
+	@Override
+	public SimpleSynthesizer getSynthesizer() {
+		return synthesizer;
+	}
+
+	/**
+	 * Gets the time of a note.
+	 *
+	 * @param index - of the note
+	 * @return time in tics
+	 * @throws IndexOutOfBoundsException if the index is out of bounds
+	 */
+	@Override
+	public int getTime(int index) {
+		return times.get(index);
+	}
+
+	/**
+	 * Gets the duration of a note.
+	 *
+	 * @param index - of the note
+	 * @return duration in tics
+	 * @throws IndexOutOfBoundsException if the index is out of bounds
+	 */
+	@Override
+	public int getDuration(int index) {
+		return durations.get(index);
+	}
+
+	/**
+	 * Gets the pitch of a note.
+	 *
+	 * @param index - of the note
+	 * @return the pitch
+	 * @throws IndexOutOfBoundsException if the index is out of bounds
+	 */
+	@Override
+	public int getPitch(int index) {
+		return pitches.get(index);
+	}
+
+	/**
+	 * Gets the channel of a note.
+	 *
+	 * @param index - of the note
+	 * @return the channel
+	 * @throws IndexOutOfBoundsException if the index is out of bounds
+	 */
+	@Override
+	public int getChannel(int index) {
+		return channels.get(index);
+	}
+
+	/**
+	 * Adds a note in sorted position, after any notes at the same time.
+	 *
+	 * @param time - of the note in tics
+	 * @param duration - of the note in tics
+	 * @param pitch - of the note
+	 * @param channel - of the note
+	 * @return the index of the added note
+	 * @throws UnsupportedOperationException if the store is a snapshot
+	 */
+	public int add(int time, int duration, int pitch, int channel) {
+		beginChange();
+		int index = times.insertSorted(time);
+		durations.insert(index, duration);
+		pitches.insert(index, pitch);
+		channels.insert(index, channel);
+		return index;
+	}
+
+	/**
+	 * Adds a copy of a note event in sorted position.
+	 *
+	 * @param note - to copy
+	 * @return the index of the added note
+	 * @throws UnsupportedOperationException if the store is a snapshot
+	 */
+	public int add(NoteEvent note) {
+		return add(note.getTime(), note.getDuration(), note.getPitch(), note.getChannel());
+	}
+
+	/**
+	 * Removes the note at an index.
+	 *
+	 * @param index - of the note to remove
+	 * @throws IndexOutOfBoundsException if the index is out of bounds
+	 * @throws UnsupportedOperationException if the store is a snapshot
+	 */
+	public void remove(int index) {
+		checkIndex(index);
+		beginChange();
+		times.remove(index);
+		durations.remove(index);
+		pitches.remove(index);
+		channels.remove(index);
+	}
+
+	/**
+	 * Removes all notes.
+	 *
+	 * @throws UnsupportedOperationException if the store is a snapshot
+	 */
+	public void clear() {
+		if(readOnly)
+			throw new UnsupportedOperationException("Snapshots can't be changed");
+		modCount++;
+		times.clear();
+		durations.clear();
+		pitches.clear();
+		channels.clear();
+	}
+
+	/**
+	 * Counts a change. The arrays copy whatever blocks a snapshot shares
+	 * as they change.
+	 *
+	 * @throws UnsupportedOperationException if the store is a snapshot
+	 */
+	private void beginChange() {
+		if(readOnly)
+			throw new UnsupportedOperationException("Snapshots can't be changed");
+		modCount++;
+	}
+}
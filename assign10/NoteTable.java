@@ -0,0 +1,226 @@
+package assign10;
+
+/**
+ * A read-only table of notes sorted by time, where each note is described
+ * by four ints: time, duration, pitch, and channel. Subclasses decide where
+ * the values are kept, such as in arrays or in a memory-mapped file, and
+ * SimpleSequencer can play any of them without creating a NoteEvent per note.
+ * All notes in a table are played on the same synthesizer.
+ *
+ * Code that needs AudioEvent objects can get a NoteView, which is a NoteEvent
+ * that reads its values from the table. A view can be moved to another index,
+ * so one view can be reused to visit every note.
+ *
+ * @author River Whitten
+ * @version 11.22.24
+ */
+public abstract class NoteTable {
+
+	private static final String NOTE_NAME = "Note";
+
+	/**
+	 * Gets the number of notes in the table.
+	 *
+	 * @return number of notes
+	 */
+	public abstract int size();
+
+	/**
+	 * Gets the synthesizer the notes play on.
+	 *
+	 * @return the synthesizer
+	 */
+	public abstract SimpleSynthesizer getSynthesizer();
+
+	/**
+	 * Gets the time of a note.
+	 *
+	 * @param index - of the note
+	 * @return time in tics
+	 * @throws IndexOutOfBoundsException if the index is out of bounds
+	 */
+	public abstract int getTime(int index);
+
+	/**
+	 * Gets the duration of a note.
+	 *
+	 * @param index - of the note
+	 * @return duration in tics
+	 * @throws IndexOutOfBoundsException if the index is out of bounds
+	 */
+	public abstract int getDuration(int index);
+
+	/**
+	 * Gets the pitch of a note.
+	 *
+	 * @param index - of the note
+	 * @return the pitch
+	 * @throws IndexOutOfBoundsException if the index is out of bounds
+	 */
+	public abstract int getPitch(int index);
+
+	/**
+	 * Gets the channel of a note.
+	 *
+	 * @param index - of the note
+	 * @return the channel
+	 * @throws IndexOutOfBoundsException if the index is out of bounds
+	 */
+	public abstract int getChannel(int index);
+
+	/**
+	 * Gets the number of changes made to the table, so that iterators can
+	 * tell when it changed under them. Tables that can't change always
+	 * return 0.
+	 *
+	 * @return the change count
+	 */
+	public int getModCount() {
+		return 0;
+	}
+
+	/**
+	 * Gets a snapshot of the table that later changes to the table do not
+	 * affect. Tables that can't change return themselves.
+	 *
+	 * @return a table with the same notes
+	 */
+	public NoteTable snapshot() {
+		return this;
+	}
+
+	/**
+	 * Gets the index of the first note at or after a given time.
+	 *
+	 * @param time - in tics
+	 * @return index of the first note with a time of at least the given time,
+	 *         or the size of the table if there is none
+	 */
+	public int indexAtTime(int time) {
+		int low = 0;
+		int high = size();
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(getTime(mid) < time)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Finds the first note at a given time with a given pitch.
+	 *
+	 * @param time - of the note in tics
+	 * @param pitch - of the note
+	 * @return the index of the note, or -1 if there is none
+	 */
+	public int find(int time, int pitch) {
+		for(int i = indexAtTime(time); i < size() && getTime(i) == time; i++)
+			if(getPitch(i) == pitch)
+				return i;
+		return -1;
+	}
+
+	/**
+	 * Gets a view of the note at an index.
+	 *
+	 * @param index - of the note
+	 * @return a NoteEvent that reads its values from this table
+	 * @throws IndexOutOfBoundsException if the index is out of bounds
+	 */
+	public NoteView getView(int index) {
+		checkIndex(index);
+		return new NoteView(index);
+	}
+
+	/**
+	 * Throws an exception if the index is not the index of a note.
+	 *
+	 * @param index - to check
+	 * @throws IndexOutOfBoundsException if the index is out of bounds
+	 */
+	protected void checkIndex(int index) {
+		if(index < 0 || index >= size())
+			throw new IndexOutOfBoundsException();
+	}
+
+	/**
+	 * A NoteEvent that reads its values from a position in this table.
+	 * Changing the table changes what the view reports.
+	 */
+	public class NoteView extends NoteEvent {
+		private int index;
+
+		/**
+		 * Creates a view of the note at an index.
+		 *
+		 * @param index - of the note
+		 */
+		private NoteView(int index) {
+			super(0, NOTE_NAME, 0, 0, 0, NoteTable.this.getSynthesizer());
+			this.index = index;
+		}
+
+		/**
+		 * Gets the index of the note this view reads.
+		 *
+		 * @return index in the table
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * Moves this view to another note in the table.
+		 *
+		 * @param index - of the note
+		 * @throws IndexOutOfBoundsException if the index is out of bounds
+		 */
+		public void setIndex(int index) {
+			checkIndex(index);
+			this.index = index;
+		}
+
+		@Override
+		public int getTime() {
+			return NoteTable.this.getTime(index);
+		}
+
+		@Override
+		public int getChannel() {
+			return NoteTable.this.getChannel(index);
+		}
+
+		@Override
+		public int getDuration() {
+			return NoteTable.this.getDuration(index);
+		}
+
+		@Override
+		public int getPitch() {
+			return NoteTable.this.getPitch(index);
+		}
+
+		@Override
+		public void execute() {
+			getSynthesizer().noteOn(getChannel(), getPitch());
+		}
+
+		@Override
+		public void complete() {
+			getSynthesizer().noteOff(getChannel(), getPitch());
+		}
+
+		@Override
+		public void cancel() {
+			getSynthesizer().noteOff(getChannel(), getPitch());
+		}
+
+		@Override
+		public String toString() {
+			return getName() + "[" + getChannel() + ", " + getTime() + ", " + getDuration() + ", " + getPitch() + "]";
+		}
+	}
+}
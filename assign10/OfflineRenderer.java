@@ -0,0 +1,327 @@
+package assign10;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Synthesizer;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+/**
+ * Renders a sequence to a WAV file as fast as the CPU allows, without
+ * playing it in real time and without a sound device.
+ *
+ * The sequence is walked in tic order. Notes in the sequence and its note
+ * table are rendered, and each TrackEvent or PatternInstance is expanded into
+ * the notes of its track or pattern that start within the event's duration,
+ * repeating the track or pattern if it loops. As in playback, a note is cut
+ * off at the end of the pass it starts in. Volume ChangeEvents are rendered too.
+ *
+ * When Java's software synthesizer can render to a stream (its
+ * AudioSynthesizer.openStream method is only reachable when the JVM is run
+ * with --add-exports java.desktop/com.sun.media.sound=ALL-UNNAMED, as
+ * gradle run does), it is used so the file sounds like live playback.
+ * Otherwise a simple sine oscillator renders the notes instead. It follows
+ * the volume of each channel, but plays every channel with the same sine
+ * wave, so instruments and pitch bends are not heard.
+ *
+ * @author River Whitten
+ * @version 11.22.24
+ */
+public class OfflineRenderer {
+
+	private static final float SAMPLE_RATE = 44100;
+	private static final AudioFormat FORMAT = new AudioFormat(SAMPLE_RATE, 16, 2, true, false);
+	// Extra time rendered after the sequence so the last notes can fade out
+	private static final double TAIL_SECONDS = 1.0;
+	private static final int VELOCITY = 100;
+	// Tracks nested deeper than this are left out, as in playback, so a
+	// track that contains itself can't expand forever.
+	private static final int MAX_DEPTH = 16;
+
+	/**
+	 * Renders one pass of a sequence to a WAV file, replacing the file if it exists.
+	 *
+	 * @param sequencer - whose events to render, at its tempo map
+	 * @param file - to write
+	 * @return true if the software synthesizer was used, false if the oscillator was
+	 * @throws IOException if the file can't be written
+	 */
+	public static boolean render(SimpleSequencer sequencer, File file) throws IOException {
+		NoteStore notes = new NoteStore(null);
+		NoteStore volumes = new NoteStore(null); // time, channel, and value of volume changes
+		collect(sequencer.snapshot(), 0, sequencer.getLength(), 0, notes, volumes);
+
+		TempoMap tempo = sequencer.getTempoMap();
+		long frames = toFrame(tempo, sequencer.getLength()) + (long)(TAIL_SECONDS * SAMPLE_RATE);
+		AudioInputStream stream = openSynthesizerStream(tempo, notes, volumes, frames);
+		boolean usedSynthesizer = stream != null;
+		if(stream == null)
+			stream = new AudioInputStream(new OscillatorStream(tempo, notes, volumes, frames), FORMAT, frames);
+		try {
+			AudioSystem.write(stream, AudioFileFormat.Type.WAVE, file);
+		} finally {
+			stream.close();
+		}
+		return usedSynthesizer;
+	}
+
+	/**
+	 * Adds the notes and volume changes of one pass of a sequence to the given
+	 * stores, shifted by an offset, expanding TrackEvents and PatternInstances
+	 * into their notes. Notes that would sound past the end of the pass are
+	 * shortened to end with it.
+	 *
+	 * @param snapshot - events to collect
+	 * @param offset - tics to add to every time
+	 * @param duration - length of the pass; only events starting before it are collected
+	 * @param depth - number of tracks or patterns the sequence is nested in
+	 * @param notes - to add notes to
+	 * @param volumes - to add volume changes to, with the value as the pitch
+	 */
+	private static void collect(SimpleSequencer.Snapshot snapshot, int offset, int duration, int depth,
+			NoteStore notes, NoteStore volumes) {
+		for(AudioEvent event : snapshot) {
+			if(event.getTime() >= duration)
+				break;
+			int time = offset + event.getTime();
+			int remaining = duration - event.getTime();
+			if(event instanceof NoteEvent) {
+				NoteEvent note = (NoteEvent)event;
+				notes.add(time, Math.min(note.getDuration(), remaining), note.getPitch(), note.getChannel());
+			} else if(event instanceof ChangeEvent && event.getName().equals("volume")) {
+				volumes.add(time, 0, ((ChangeEvent)event).getValue(), event.getChannel());
+			} else if(event instanceof TrackEvent && depth < MAX_DEPTH) {
+				TrackEvent track = (TrackEvent)event;
+				SimpleSequencer sequence = track.getSequence();
+				collectPasses(sequence.snapshot(), sequence.getLength(), sequence.isLooping(), time,
+						Math.min(track.getDuration(), remaining), depth + 1, notes, volumes);
+			} else if(event instanceof PatternInstance && depth < MAX_DEPTH) {
+				Pattern pattern = ((PatternInstance)event).getPattern();
+				collectPasses(pattern.getEvents(), pattern.getLength(), pattern.isLooping(), time,
+						Math.min(((PatternInstance)event).getDuration(), remaining), depth + 1, notes, volumes);
+			}
+		}
+	}
+
+	/**
+	 * Adds the notes and volume changes of a track or pattern played for a
+	 * duration, with one pass for each time it repeats if it loops.
+	 *
+	 * @param snapshot - events of the track or pattern
+	 * @param length - of one pass in tics
+	 * @param looping - true if passes repeat for the whole duration
+	 * @param offset - tics to add to every time
+	 * @param duration - how long the track or pattern plays
+	 * @param depth - number of tracks or patterns the events are nested in
+	 * @param notes - to add notes to
+	 * @param volumes - to add volume changes to, with the value as the pitch
+	 */
+	private static void collectPasses(SimpleSequencer.Snapshot snapshot, int length, boolean looping,
+			int offset, int duration, int depth, NoteStore notes, NoteStore volumes) {
+		if(length <= 0)
+			return;
+		int pass = 0;
+		do {
+			collect(snapshot, offset + pass, Math.min(length, duration - pass), depth, notes, volumes);
+			pass += length;
+		} while(looping && pass < duration);
+	}
+
+	/**
+	 * Converts a time in tics to a frame number with a tempo map.
+	 *
+	 * @param tempo - converting tics to time
+	 * @param tics - time to convert
+	 * @return frame number
+	 */
+	private static long toFrame(TempoMap tempo, int tics) {
+		return Math.round(tempo.ticsToNanos(tics) * (SAMPLE_RATE / 1e9));
+	}
+
+	/**
+	 * Tries to render with Java's software synthesizer. Every message is sent
+	 * up front with its timestamp, and the synthesizer renders them as the
+	 * stream is read.
+	 *
+	 * @param tempo - converting tics to time
+	 * @param notes - to render
+	 * @param volumes - volume changes to render
+	 * @param frames - length of the stream
+	 * @return the rendered stream, or null if the synthesizer can't render to a stream
+	 */
+	private static AudioInputStream openSynthesizerStream(TempoMap tempo, NoteStore notes,
+			NoteStore volumes, long frames) {
+		try {
+			Synthesizer synth = MidiSystem.getSynthesizer();
+			Method openStream = null;
+			for(Class<?> type : synth.getClass().getInterfaces())
+				if(type.getName().equals("com.sun.media.sound.AudioSynthesizer"))
+					openStream = type.getMethod("openStream", AudioFormat.class, java.util.Map.class);
+			if(openStream == null)
+				return null;
+			AudioInputStream stream = (AudioInputStream)openStream.invoke(synth, FORMAT, null);
+
+			Receiver receiver = synth.getReceiver();
+			for(int i = 0; i < volumes.size(); i++)
+				receiver.send(new ShortMessage(ShortMessage.CONTROL_CHANGE, volumes.getChannel(i) & 0x0F, 7,
+						Math.max(0, Math.min(127, volumes.getPitch(i)))), toMicros(tempo, volumes.getTime(i)));
+			for(int i = 0; i < notes.size(); i++) {
+				int channel = notes.getChannel(i) & 0x0F;
+				int pitch = notes.getPitch(i) & 0x7F;
+				receiver.send(new ShortMessage(ShortMessage.NOTE_ON, channel, pitch, VELOCITY),
+						toMicros(tempo, notes.getTime(i)));
+				receiver.send(new ShortMessage(ShortMessage.NOTE_OFF, channel, pitch, 0),
+						toMicros(tempo, notes.getTime(i) + notes.getDuration(i)));
+			}
+			return new AudioInputStream(stream, FORMAT, frames);
+		} catch (Exception e) {
+			// Not reachable or not available on this JVM; use the oscillator.
+			return null;
+		}
+	}
+
+	/**
+	 * Converts a time in tics to microseconds with a tempo map.
+	 *
+	 * @param tempo - converting tics to time
+	 * @param tics - time to convert
+	 * @return microseconds from the start
+	 */
+	private static long toMicros(TempoMap tempo, int tics) {
+		return tempo.ticsToNanos(tics) / 1000;
+	}
+
+	/**
+	 * A stream of 16-bit stereo samples made by mixing a sine wave for each note.
+	 * Notes are read in order of start time, and only the notes that are
+	 * sounding are kept, so the work per sample depends on polyphony rather
+	 * than on the length of the song. Each note is scaled by the volume of
+	 * its channel, which volume changes set as they are reached.
+	 */
+	private static class OscillatorStream extends InputStream {
+		// Length of the fade in and fade out of each note, in frames
+		private static final int FADE_FRAMES = 441;
+		private static final double AMPLITUDE = 0.15;
+		// Volume of a channel before it is changed, as on a MIDI synthesizer
+		private static final int DEFAULT_VOLUME = 100;
+
+		private long[] starts; // start frame of each note, in order
+		private long[] ends;
+		private double[] steps; // phase change per frame
+		private int[] channels;
+		private int nextNote;
+
+		private long[] volumeFrames; // frame of each volume change, in order
+		private int[] volumeChannels;
+		private double[] volumeGains; // the new volume, from 0 to 1
+		private int nextVolume;
+		private double[] gains; // current volume of each channel, from 0 to 1
+
+		private int[] active; // indices of sounding notes
+		private double[] phases;
+		private int activeCount;
+
+		private long frame;
+		private long frames;
+		private byte[] single;
+
+		/**
+		 * Creates a stream for the given notes.
+		 *
+		 * @param tempo - converting tics to time
+		 * @param notes - to render, sorted by time
+		 * @param volumes - volume changes, sorted by time, with the value as the pitch
+		 * @param frames - length of the stream
+		 */
+		public OscillatorStream(TempoMap tempo, NoteStore notes, NoteStore volumes, long frames) {
+			this.frames = frames;
+			starts = new long[notes.size()];
+			ends = new long[notes.size()];
+			steps = new double[notes.size()];
+			channels = new int[notes.size()];
+			for(int i = 0; i < notes.size(); i++) {
+				starts[i] = toFrame(tempo, notes.getTime(i));
+				ends[i] = Math.max(starts[i] + 1, toFrame(tempo, notes.getTime(i) + notes.getDuration(i)));
+				double frequency = 440 * Math.pow(2, (notes.getPitch(i) - 69) / 12.0);
+				steps[i] = 2 * Math.PI * frequency / SAMPLE_RATE;
+				channels[i] = notes.getChannel(i) & 0x0F;
+			}
+			volumeFrames = new long[volumes.size()];
+			volumeChannels = new int[volumes.size()];
+			volumeGains = new double[volumes.size()];
+			for(int i = 0; i < volumes.size(); i++) {
+				volumeFrames[i] = toFrame(tempo, volumes.getTime(i));
+				volumeChannels[i] = volumes.getChannel(i) & 0x0F;
+				volumeGains[i] = Math.max(0, Math.min(127, volumes.getPitch(i))) / 127.0;
+			}
+			gains = new double[16];
+			Arrays.fill(gains, DEFAULT_VOLUME / 127.0);
+			active = new int[16];
+			phases = new double[16];
+			single = new byte[1];
+		}
+
+		@Override
+		public int read() throws IOException {
+			return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			int frameCount = (int)Math.min(length / 4, frames - frame);
+			if(frameCount <= 0)
+				return frames == frame ? -1 : 0;
+
+			for(int f = 0; f < frameCount; f++, frame++) {
+				while(nextVolume < volumeFrames.length && volumeFrames[nextVolume] <= frame) {
+					gains[volumeChannels[nextVolume]] = volumeGains[nextVolume];
+					nextVolume++;
+				}
+				// Start notes that begin on this frame and drop ones that ended.
+				while(nextNote < starts.length && starts[nextNote] <= frame) {
+					if(activeCount == active.length) {
+						active = Arrays.copyOf(active, activeCount * 2);
+						phases = Arrays.copyOf(phases, activeCount * 2);
+					}
+					active[activeCount] = nextNote++;
+					phases[activeCount++] = 0;
+				}
+
+				double mix = 0;
+				for(int v = 0; v < activeCount; v++) {
+					int note = active[v];
+					long end = ends[note] + FADE_FRAMES;
+					if(frame >= end) {
+						activeCount--;
+						active[v] = active[activeCount];
+						phases[v] = phases[activeCount];
+						v--;
+						continue;
+					}
+					double envelope = Math.min(1.0, (frame - starts[note]) / (double)FADE_FRAMES);
+					if(frame > ends[note])
+						envelope *= (end - frame) / (double)FADE_FRAMES;
+					mix += Math.sin(phases[v]) * envelope * gains[channels[note]];
+					phases[v] += steps[note];
+				}
+
+				int sample = (int)Math.max(-32768, Math.min(32767, mix * AMPLITUDE * 32767));
+				int i = offset + f * 4;
+				buffer[i] = (byte)sample;
+				buffer[i + 1] = (byte)(sample >> 8);
+				buffer[i + 2] = (byte)sample;
+				buffer[i + 3] = (byte)(sample >> 8);
+			}
+			return frameCount * 4;
+		}
+	}
+}
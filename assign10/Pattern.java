@@ -0,0 +1,157 @@
+package assign10;
+
+/**
+ * An unchanging copy of a track's events and note table, with the track's
+ * length and whether it loops. A pattern is taken from a sequencer in
+ * constant time, since it shares the sequencer's snapshot, and any number of
+ * PatternInstances can play it at once. Each instance keeps its own position,
+ * so the pattern itself is never changed by playing it.
+ *
+ * Each TrackEvent among the events is given a pattern of its track when the
+ * pattern is made, so playback only walks patterns that already exist and
+ * never takes another sequencer's snapshot. A track used several times in
+ * one pattern gets one nested pattern. Tracks nested deeper than MAX_DEPTH
+ * are left out, so a track that contains itself can't expand forever.
+ *
+ * @author River Whitten
+ * @version 11.22.24
+ */
+public class Pattern {
+
+	// Most patterns a pattern can be nested in
+	static final int MAX_DEPTH = 16;
+
+	private final SimpleSequencer.Snapshot snapshot;
+	private final int length;
+	private final boolean looping;
+	private final int depth; // number of patterns this one is nested in
+	private final Pattern[] nested; // pattern of each TrackEvent, by index in the events
+	private final BetterDynamicArray<SimpleSequencer> nestedTracks; // each track nested once
+	private final BetterDynamicArray<Pattern> nestedPatterns; // the pattern of each nested track
+
+	/**
+	 * Creates a pattern of the current events of a sequencer, and of the
+	 * tracks its TrackEvents play. Later changes to the sequencer or those
+	 * tracks do not change the pattern.
+	 *
+	 * @param track - sequencer to take the events, length, and looping of
+	 */
+	public Pattern(SimpleSequencer track) {
+		this(track, 0, new BetterDynamicArray<SimpleSequencer>(), new BetterDynamicArray<Pattern>());
+	}
+
+	/**
+	 * Creates a pattern nested in other patterns. Patterns made for the same
+	 * track at the same depth are shared, so a track used many times is only
+	 * copied once at each depth.
+	 *
+	 * @param track - sequencer to take the events, length, and looping of
+	 * @param depth - number of patterns the new one is nested in
+	 * @param madeTracks - tracks that patterns have been made for so far
+	 * @param madePatterns - pattern made for each of those tracks
+	 */
+	private Pattern(SimpleSequencer track, int depth, BetterDynamicArray<SimpleSequencer> madeTracks,
+			BetterDynamicArray<Pattern> madePatterns) {
+		snapshot = track.snapshot();
+		length = track.getLength();
+		looping = track.isLooping();
+		this.depth = depth;
+		nestedTracks = new BetterDynamicArray<SimpleSequencer>(1, 2.0);
+		nestedPatterns = new BetterDynamicArray<Pattern>(1, 2.0);
+
+		EventStore events = snapshot.getEvents();
+		nested = new Pattern[events.size()];
+		if(depth >= MAX_DEPTH)
+			return;
+		for(int i = 0; i < events.size(); i++) {
+			if(!(events.get(i) instanceof TrackEvent))
+				continue;
+			SimpleSequencer sequence = ((TrackEvent)events.get(i)).getSequence();
+			Pattern pattern = find(sequence, nestedTracks, nestedPatterns, depth + 1);
+			if(pattern == null) {
+				pattern = find(sequence, madeTracks, madePatterns, depth + 1);
+				if(pattern == null) {
+					pattern = new Pattern(sequence, depth + 1, madeTracks, madePatterns);
+					madeTracks.add(sequence);
+					madePatterns.add(pattern);
+				}
+				nestedTracks.add(sequence);
+				nestedPatterns.add(pattern);
+			}
+			nested[i] = pattern;
+		}
+	}
+
+	/**
+	 * Finds the pattern made for a track at a depth.
+	 *
+	 * @param track - to find
+	 * @param tracks - tracks to look through
+	 * @param patterns - pattern of each of those tracks
+	 * @param depth - the pattern must be nested at
+	 * @return the pattern, or null if there is none
+	 */
+	private static Pattern find(SimpleSequencer track, BetterDynamicArray<SimpleSequencer> tracks,
+			BetterDynamicArray<Pattern> patterns, int depth) {
+		for(int i = 0; i < tracks.size(); i++)
+			if(tracks.get(i) == track && patterns.get(i).depth == depth)
+				return patterns.get(i);
+		return null;
+	}
+
+	/**
+	 * Gets the length of one pass through the pattern.
+	 *
+	 * @return length in tics
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Checks whether the pattern repeats for as long as an instance lasts.
+	 *
+	 * @return true if the pattern loops
+	 */
+	public boolean isLooping() {
+		return looping;
+	}
+
+	/**
+	 * Gets the events of the pattern, including the notes in its note table.
+	 *
+	 * @return the events, which can be iterated in time order
+	 */
+	public SimpleSequencer.Snapshot getEvents() {
+		return snapshot;
+	}
+
+	/**
+	 * Gets the pattern that a TrackEvent of this pattern plays.
+	 *
+	 * @param index - of the TrackEvent in the pattern's events, not counting its note table
+	 * @return the pattern of the event's track, or null if the event is not a
+	 *         TrackEvent or is nested too deeply to play
+	 */
+	public Pattern getNested(int index) {
+		return nested[index];
+	}
+
+	/**
+	 * Checks whether the pattern still matches a sequencer, meaning neither
+	 * the sequencer nor any track nested in it has been edited or changed
+	 * its length or looping since the pattern was taken. This compares
+	 * snapshots, so it takes constant time for each nested pattern.
+	 *
+	 * @param track - sequencer the pattern was taken from
+	 * @return true if a new pattern of the sequencer would be the same
+	 */
+	public boolean isCurrent(SimpleSequencer track) {
+		if(track.snapshot() != snapshot || track.getLength() != length || track.isLooping() != looping)
+			return false;
+		for(int i = 0; i < nestedTracks.size(); i++)
+			if(!nestedPatterns.get(i).isCurrent(nestedTracks.get(i)))
+				return false;
+		return true;
+	}
+}
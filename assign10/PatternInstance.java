@@ -0,0 +1,89 @@
+package assign10;
+
+/**
+ * One use of a Pattern in a sequence, starting at the event's time and
+ * lasting for its duration. The instance only refers to the pattern, so a
+ * pattern can be used any number of times without copying its notes.
+ *
+ * SimpleSequencer plays the pattern's events itself when it reaches an
+ * instance, keeping a separate position for each instance, so instances
+ * of one pattern can overlap without affecting each other. Executing an
+ * instance on its own does nothing.
+ *
+ * @author River Whitten
+ * @version 11.22.24
+ */
+public class PatternInstance extends AudioEvent {
+
+	private final Pattern pattern;
+	private final int duration;
+
+	/**
+	 * Creates an instance of a pattern.
+	 *
+	 * @param time - when the pattern starts, in tics
+	 * @param name - of the event
+	 * @param channel - of the event, such as the song row it was placed on
+	 * @param duration - how long the pattern plays, in tics
+	 * @param pattern - to play
+	 */
+	public PatternInstance(int time, String name, int channel, int duration, Pattern pattern) {
+		super(time, name, channel);
+		this.pattern = pattern;
+		this.duration = duration;
+	}
+
+	/**
+	 * Gets the pattern that is played.
+	 *
+	 * @return the pattern
+	 */
+	public Pattern getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * Gets how long the pattern plays.
+	 *
+	 * @return duration in tics
+	 */
+	public int getDuration() {
+		return duration;
+	}
+
+	@Override
+	public void execute() {
+		// Played by the sequencer
+	}
+
+	@Override
+	public void complete() {
+		// Played by the sequencer
+	}
+
+	@Override
+	public void cancel() {
+		// Played by the sequencer
+	}
+
+	@Override
+	public String toString() {
+		return getName() + "[" + getChannel() + ", " + getTime() + ", " + getDuration() + "]";
+	}
+
+	/**
+	 * Compares this instance with another audio event for ordering.
+	 * Events are ordered by time, and at the same time instances and
+	 * track events come after change events and note events.
+	 *
+	 * @param other - the audio event to compare to
+	 * @return a negative integer, zero, or a positive integer as this event
+	 *         is less than, equal to, or greater than the other event
+	 */
+	@Override
+	public int compareTo(AudioEvent other) {
+		if(getTime() != other.getTime())
+			return Integer.compare(getTime(), other.getTime());
+		return (other instanceof TrackEvent || other instanceof PatternInstance) ? 0 : 1;
+	}
+}
@@ -0,0 +1,157 @@
+package assign10;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/**
+ * Moves the playheads of every editor with one shared Swing timer.
+ * The timer only runs while at least one registered sequencer is running,
+ * so idle editors cost nothing, and each frame repaints only the strip
+ * between a playhead's old and new positions rather than the whole editor.
+ *
+ * @author River Whitten
+ * @version 11.22.24
+ */
+public class PlayheadAnimator implements ActionListener, ChangeListener {
+
+	// About 60 frames per second
+	private static final int FRAME_MILLIS = 16;
+
+	private static PlayheadAnimator shared;
+
+	private Timer timer;
+	private BetterDynamicArray<Playhead> playheads;
+
+	/**
+	 * Something that draws a playhead for a sequencer. The repaint and
+	 * getHeight methods are normally inherited from JComponent.
+	 */
+	public interface Playhead {
+		/**
+		 * Gets the sequencer the playhead follows.
+		 *
+		 * @return the sequencer
+		 */
+		SimpleSequencer getSequencer();
+
+		/**
+		 * Works out where the playhead belongs for the sequencer's current time.
+		 *
+		 * @return x position in pixels
+		 */
+		int computePlayheadX();
+
+		/**
+		 * Gets where the playhead was last drawn.
+		 *
+		 * @return x position in pixels
+		 */
+		int getPlayheadX();
+
+		/**
+		 * Sets where the playhead is drawn on the next paint.
+		 *
+		 * @param x - position in pixels
+		 */
+		void setPlayheadX(int x);
+
+		/**
+		 * Gets how wide the playhead is drawn.
+		 *
+		 * @return width in pixels
+		 */
+		int getPlayheadWidth();
+
+		/**
+		 * Repaints part of the component.
+		 *
+		 * @param x - left of the area
+		 * @param y - top of the area
+		 * @param width - of the area
+		 * @param height - of the area
+		 */
+		void repaint(int x, int y, int width, int height);
+
+		/**
+		 * Gets the height of the component.
+		 *
+		 * @return height in pixels
+		 */
+		int getHeight();
+	}
+
+	/**
+	 * Creates an animator with no playheads. Use getShared instead so that
+	 * every editor shares one timer.
+	 */
+	private PlayheadAnimator() {
+		playheads = new BetterDynamicArray<Playhead>();
+		timer = new Timer(FRAME_MILLIS, this);
+	}
+
+	/**
+	 * Gets the animator shared by all editors.
+	 *
+	 * @return the shared animator
+	 */
+	public static synchronized PlayheadAnimator getShared() {
+		if(shared == null)
+			shared = new PlayheadAnimator();
+		return shared;
+	}
+
+	/**
+	 * Starts moving a playhead whenever its sequencer runs.
+	 *
+	 * @param playhead - to animate
+	 */
+	public void register(Playhead playhead) {
+		playheads.add(playhead);
+		playhead.getSequencer().addChangeListener(this);
+	}
+
+	/**
+	 * Starts the timer when a sequencer starts. One more frame is always
+	 * drawn so that a stopped playhead is moved back.
+	 * This can be called on the transport thread.
+	 *
+	 * @param event - from the sequencer that started or stopped
+	 */
+	@Override
+	public void stateChanged(ChangeEvent event) {
+		SwingUtilities.invokeLater(() -> {
+			if(!timer.isRunning())
+				timer.start();
+		});
+	}
+
+	/**
+	 * Moves every playhead that changed position, and stops the timer
+	 * once no sequencer is running.
+	 *
+	 * @param event - from the timer
+	 */
+	@Override
+	public void actionPerformed(ActionEvent event) {
+		boolean anyRunning = false;
+		for(int i = 0; i < playheads.size(); i++) {
+			Playhead playhead = playheads.get(i);
+			anyRunning |= playhead.getSequencer().isRunning();
+			int oldX = playhead.getPlayheadX();
+			int newX = playhead.computePlayheadX();
+			if(newX == oldX)
+				continue;
+			playhead.setPlayheadX(newX);
+			int left = Math.min(oldX, newX) - 1;
+			int right = Math.max(oldX, newX) + playhead.getPlayheadWidth() + 1;
+			playhead.repaint(left, 0, right - left, playhead.getHeight());
+		}
+		if(!anyRunning)
+			timer.stop();
+	}
+}
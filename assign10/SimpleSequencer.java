@@ -1,87 +1,252 @@
 package assign10;
 
-import java.util.Arrays;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
-import java.util.Timer;
-import java.util.TimerTask;
+
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 
 /**
  * A Sequencer maintains a sequence of AudioEvents and 
  * schedules their execution.
  * Playback can be started, stopped, and set to loop.
  * Playback speed can be adjusted by setting the ratio of
- * AudioEvent tics to milliseconds.
+ * AudioEvent tics to milliseconds, or by a TempoMap that changes
+ * it at points along the sequence. Playback, the elapsed time, and
+ * every conversion between tics and time use the same map.
+ * 
+ * Iterating over the sequencer is fail-fast: changing the sequence or its
+ * note table during the loop makes the iterator throw a
+ * ConcurrentModificationException instead of skipping or repeating events.
+ * To walk the events while they may be edited, iterate over a snapshot.
+ * 
+ * Edits are made under this sequencer's lock. While the sequence is playing,
+ * each edit publishes a new snapshot, which takes time proportional to the
+ * number of channels, and the transport thread reads the published snapshot
+ * without taking the lock, so a long batch of edits never holds up dispatching.
+ * The transport carries on from the tic it had reached; events added ahead of
+ * that tic are played in the same pass, and removed events that are sounding
+ * are cancelled, so edits are heard without restarting. While stopped, edits
+ * only mark the snapshot out of date, and start publishes it, taking this
+ * sequencer's lock briefly if the sequence was edited since it last played.
+ * Starting, stopping, and dispatching use a separate playback lock, so the
+ * event dispatch thread never waits for events to be played.
+ * 
+ * Events are dispatched by a Transport, which plays every sequencer that
+ * uses it on one thread and one clock. By default all sequencers share
+ * Transport.getShared().
  * 
  * @author Eric Heisler and River Whitten
  * @version 11.07.2024
  */
 public class SimpleSequencer implements Iterable<AudioEvent>{
 
-	BetterDynamicArray<AudioEvent> sequence;
+	EventStore sequence;
+	NoteTable notes;
+	
 	
+	private volatile long startTime; // System.nanoTime at the start of the current pass
+	private volatile int length;
+	private volatile TempoMap tempo;
+	private volatile boolean running;
+	private volatile boolean loopSequence;
+	private Transport transport;
+	private boolean dispatched; // true while the transport dispatches this sequencer
+	private Player player; // created on the first start
+	private volatile RuntimeException playbackError; // why playback last stopped, if an event failed
+	private BetterDynamicArray<ChangeListener> changeListeners;
 	
-	private long startTime;
-	private int length;
-	private double speedFactor;
-	private boolean running;
-	private boolean loopSequence;
-	private Timer timer;
+	// Guards playback state, so that edits never wait for dispatching.
+	// Code holding this lock may take the sequencer's lock, but not the other way around.
+	private final Object playbackLock = new Object();
+	private volatile Snapshot published; // the latest snapshot, always current while running
+	private volatile boolean publishedStale; // true once an edit was made since the snapshot
+	
+	// Observed lateness of executed events, in nanoseconds
+	private long latenessCount;
+	private long latenessTotal;
+	private long latenessMax;
 	
 	/**
 	 * Creates an empty sequence of a given length in tics.
+	 * Its note table has no synthesizer, so notes can't be added to it
+	 * with addNote; use the other constructor for that, or setNotes.
 	 * 
 	 * @param sequenceLength - number of timing tics in the sequence
 	 */
 	public SimpleSequencer(int sequenceLength) {
+		
+		this(sequenceLength, null);
+	}
+	
+	/**
+	 * Creates an empty sequence of a given length in tics, whose note
+	 * table plays on the given synthesizer.
+	 * 
+	 * @param sequenceLength - number of timing tics in the sequence
+	 * @param synthesizer - to play notes added with addNote on
+	 */
+	public SimpleSequencer(int sequenceLength, SimpleSynthesizer synthesizer) {
 
-		sequence = new BetterDynamicArray<>();
+		sequence = new EventStore();
+		notes = new NoteStore(synthesizer);
 		
 		startTime = 0;
 		running = false;
 		length = sequenceLength;
-		speedFactor = 1;
+		tempo = new TempoMap(1);
 		loopSequence = false;
-		timer = new Timer();
+		transport = Transport.getShared();
+		player = null;
+		changeListeners = new BetterDynamicArray<ChangeListener>();
+		publishedStale = true;
+		resetLatenessStats();
 	}
 	
 	/**
-	 * Gets the number of events in the sequence.
+	 * Gets the number of events in the sequence, including
+	 * the notes in its note table.
 	 * 
 	 * @return number of events
 	 */
 	public int getEventCount() {
 
-		return sequence.size();
+		return sequence.size() + notes.size();
+	}
+	
+	/**
+	 * Gets the table of notes that plays along with the sequence.
+	 * Notes in the table are played directly from where it keeps them,
+	 * without a NoteEvent object for each note. This starts out as an
+	 * empty NoteStore. The table returned is a snapshot that can't be
+	 * changed; change the notes with addNote and removeNote, or replace
+	 * the table with setNotes.
+	 * 
+	 * @return a snapshot of the note table
+	 */
+	public synchronized NoteTable getNotes() {
+		
+		return notes.snapshot();
+	}
+	
+	/**
+	 * Replaces the table of notes that plays along with the sequence,
+	 * such as a NoteStore or the notes of a MappedSong. While playing, the new
+	 * table joins playback at the current time. The sequencer takes over the
+	 * table, so later changes to it must be made with addNote and removeNote.
+	 * A table that can't be changed is played where it is until the first
+	 * such change, which copies it into a NoteStore.
+	 * 
+	 * @param newNotes - the note table to play
+	 * @throws IllegalArgumentException if the table has notes but no synthesizer to play them on
+	 */
+	public void setNotes(NoteTable newNotes) {
+		
+		if(newNotes.size() > 0 && newNotes.getSynthesizer() == null)
+			throw new IllegalArgumentException("Notes need a synthesizer to play on");
+		// Skip past earlier notes first, so the new table never plays them late.
+		synchronized(playbackLock) {
+			if(player != null && running)
+				player.seekNotes(getElapsedTime());
+		}
+		synchronized(this) {
+			notes = newNotes;
+			changed();
+		}
 	}
 	
 	/**
 	 * Adds an event to the sequence.
-	 * Re-sorts the sequence after adding.
+	 * The event is inserted in sorted position, so the sequence stays sorted
+	 * without re-sorting it.
 	 * 
 	 * @param event - to add
 	 */
-	public void add(AudioEvent event) {
+	public synchronized void add(AudioEvent event) {
 
 		sequence.add(event);
-		sequence.sort();
-		
-		
+		changed();
 	}
 	
 	/**
 	 * Adds all events from a collection to the sequence.
-	 * Re-sorts the sequence.
+	 * The events are merged into the sorted sequence in linear time.
+	 * If the collection is not already sorted, a sorted copy is merged
+	 * instead; the collection itself is not changed.
 	 * 
 	 * @param events - to add
 	 */
-	public void add(BetterDynamicArray<AudioEvent> events) {
+	public synchronized void add(BetterDynamicArray<AudioEvent> events) {
 
-		for(int i = 0; i < events.size(); i++) {
-			sequence.add(events.get(i));
+		if(!events.isSorted()) {
+			BetterDynamicArray<AudioEvent> sorted = new BetterDynamicArray<>();
+			sorted.addAll(events);
+			sorted.sort();
+			events = sorted;
+		}
+		sequence.addAll(events);
+		changed();
+	}
+	
+	/**
+	 * Adds a note to the note table, in sorted position.
+	 * The note plays on the table's synthesizer, without a NoteEvent object.
+	 * 
+	 * @param time - of the note in tics
+	 * @param duration - of the note in tics
+	 * @param pitch - of the note
+	 * @param channel - of the note
+	 * @throws IllegalStateException if the note table has no synthesizer
+	 */
+	public synchronized void addNote(int time, int duration, int pitch, int channel) {
+		
+		getNoteStore().add(time, duration, pitch, channel);
+		changed();
+	}
+	
+	/**
+	 * Removes the first note in the note table at a given time with a given pitch.
+	 * If there is no such note, nothing is changed.
+	 * 
+	 * @param time - of the note in tics
+	 * @param pitch - of the note
+	 * @return true if a note was removed
+	 * @throws IllegalStateException if the note table has no synthesizer
+	 */
+	public synchronized boolean removeNote(int time, int pitch) {
+		
+		NoteStore store = getNoteStore();
+		for(int i = store.indexAtTime(time); i < store.size() && store.getTime(i) == time; i++) {
+			if(store.getPitch(i) == pitch) {
+				store.remove(i);
+				changed();
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Gets the note table as a NoteStore that addNote and removeNote can change.
+	 * A table that can't be changed, such as the notes of a MappedSong, is
+	 * first copied into a new NoteStore, which takes linear time once.
+	 * Must be called while holding this sequencer's lock.
+	 * 
+	 * @return the note store
+	 * @throws IllegalStateException if the note table has no synthesizer
+	 */
+	private NoteStore getNoteStore() {
+		
+		if(notes.getSynthesizer() == null)
+			throw new IllegalStateException("The note table has no synthesizer to play notes on");
+		if(!(notes instanceof NoteStore) || ((NoteStore)notes).isReadOnly()) {
+			NoteStore store = new NoteStore(notes.getSynthesizer());
+			for(int i = 0; i < notes.size(); i++)
+				store.add(notes.getTime(i), notes.getDuration(i), notes.getPitch(i), notes.getChannel(i));
+			notes = store;
 		}
-		// Then sort the sequence.
-		sequence.sort();
+		return (NoteStore)notes;
 	}
 	
 	/**
@@ -90,36 +255,103 @@ public class SimpleSequencer implements Iterable<AudioEvent>{
 	 * 
 	 * @param newSequence to replace the current one
 	 */
-	public void updateSequence(BetterDynamicArray<AudioEvent> newSequence) {
+	public synchronized void updateSequence(BetterDynamicArray<AudioEvent> newSequence) {
 
-		sequence = newSequence;
+		sequence = new EventStore(newSequence);
+		changed();
+	}
+	
+	/**
+	 * Gets the events with a time in the range [startTime, endTime).
+	 * 
+	 * @param startTime - earliest time in tics to include
+	 * @param endTime - first time in tics to exclude
+	 * @return the events in time order
+	 */
+	public synchronized BetterDynamicArray<AudioEvent> getEvents(int startTime, int endTime) {
+		
+		return sequence.getRange(startTime, endTime);
+	}
+	
+	/**
+	 * Gets the events on a given channel with a time in the range [startTime, endTime).
+	 * 
+	 * @param channel - of the events
+	 * @param startTime - earliest time in tics to include
+	 * @param endTime - first time in tics to exclude
+	 * @return the events in time order
+	 */
+	public synchronized BetterDynamicArray<AudioEvent> getEvents(int channel, int startTime, int endTime) {
+		
+		return sequence.getRange(channel, startTime, endTime);
+	}
+	
+	/**
+	 * Finds the first NoteEvent in the sequence at a given time with a given pitch.
+	 * 
+	 * @param time - of the note in tics
+	 * @param pitch - of the note
+	 * @return the note, or null if there is none
+	 */
+	public synchronized NoteEvent findNote(int time, int pitch) {
 		
+		return sequence.findNote(time, pitch);
 	}
 	
 	/**
 	 * Removes the first event from the sequence that is equal to the
 	 * given event. Equality is determined by the equals method.
 	 * If the event is not in the sequence, nothing is changed.
+	 * Only events at the same time as the given event are compared.
+	 * While playing, the event is cancelled if it is sounding.
 	 * 
 	 * @param event - to remove
 	 */
-	public void remove(AudioEvent event) {
+	public synchronized void remove(AudioEvent event) {
 
-		sequence.remove(event);
-		
+		if(sequence.remove(event))
+			changed();
 	}
 	
 	/**
-	 * Removes all events from the sequence.
-	 * Note that this does not cancel currently scheduled events.
+	 * Removes all events from the sequence and its note table.
+	 * A note table that can't be changed is replaced with an empty NoteStore.
+	 * While playing, events that are sounding are cancelled, but notes
+	 * from the note table play until they end.
 	 */
-	public void clear() {
+	public synchronized void clear() {
 	
 		sequence.clear();
+		if(notes instanceof NoteStore && !((NoteStore)notes).isReadOnly())
+			((NoteStore)notes).clear();
+		else
+			notes = new NoteStore(notes.getSynthesizer());
+		changed();
+	}
+	
+	/**
+	 * Marks the published snapshot out of date after an edit, and publishes
+	 * a new one right away if the sequence is playing.
+	 * Must be called while holding this sequencer's lock.
+	 */
+	private void changed() {
+		// Mark first: start sets running before checking the mark, so one of the two publishes.
+		publishedStale = true;
+		if(running)
+			publish();
+	}
+	
+	/**
+	 * Takes a new snapshot of the sequence and its note table for playback
+	 * and other threads to read.
+	 * Must be called while holding this sequencer's lock.
+	 */
+	private void publish() {
+		published = new Snapshot(sequence.snapshot(), notes.snapshot());
+		publishedStale = false;
 	}
 	
 	///////////////////////////////////////////////////////////////////////
-	// Do not modify any code below this point.
 	// These are methods and classes for scheduling execution of events
 	// and iterating over events.
 	///////////////////////////////////////////////////////////////////////
@@ -127,12 +359,55 @@ public class SimpleSequencer implements Iterable<AudioEvent>{
 	/**
 	 * Sets the number of tics per millisecond that allows
 	 * speed control of the sequence. The default is one
-	 * tic per millisecond.
+	 * tic per millisecond. This sets the speed at the start of the
+	 * sequence; later tempo changes in the tempo map are kept and
+	 * scaled by the same ratio, so the whole sequence speeds up or
+	 * slows down together.
 	 * 
-	 * @param ticsPerMillisecond - number of tics in one millisecond
+	 * @param ticsPerMillisecond - number of tics in one millisecond at the start
+	 * @throws IllegalArgumentException if the speed is not positive
 	 */
 	public void setSpeedFactor(double ticsPerMillisecond) {
-		speedFactor = ticsPerMillisecond;
+		if(!(ticsPerMillisecond > 0))
+			throw new IllegalArgumentException("Tempo must be positive: " + ticsPerMillisecond);
+		synchronized(playbackLock) {
+			setTempoMap(tempo.scaled(ticsPerMillisecond / tempo.getSpeedFactor(0)));
+		}
+	}
+	
+	/**
+	 * Gets the tempo of the sequence along its timeline.
+	 * 
+	 * @return the tempo map
+	 */
+	public TempoMap getTempoMap() {
+		return tempo;
+	}
+	
+	/**
+	 * Sets the tempo of the sequence along its timeline.
+	 * 
+	 * While the sequence is playing, the new tempo takes effect at once.
+	 * Every deadline is worked out from the start time of the pass, so the
+	 * start time is moved so that the tic reached so far stays where it
+	 * is, and the rest of the pass is played at the new tempo. This takes
+	 * constant time, however many events are left. Notes that are already
+	 * sounding keep the end time they had.
+	 * 
+	 * @param newTempo - the tempo map to play with
+	 */
+	public void setTempoMap(TempoMap newTempo) {
+		synchronized(playbackLock) {
+			if(running) {
+				long now = System.nanoTime();
+				double elapsed = tempo.nanosToTics(now - startTime);
+				tempo = newTempo;
+				startTime = now - newTempo.ticsToNanos(elapsed);
+			} else {
+				tempo = newTempo;
+			}
+		}
+		transport.wake();
 	}
 	
 	/**
@@ -165,56 +440,173 @@ public class SimpleSequencer implements Iterable<AudioEvent>{
 		loopSequence = doLoop;
 	}
 	
+	/**
+	 * Checks whether the sequence loops.
+	 * 
+	 * @return true if the sequence starts again when it reaches its end
+	 */
+	public boolean isLooping() {
+		return loopSequence;
+	}
+	
+	/**
+	 * Checks whether the sequence is executing.
+	 * 
+	 * @return true between start and stop, or until a sequence that
+	 * does not loop reaches its end
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+	
+	/**
+	 * Gets the exception that stopped playback, if an event threw one.
+	 * The transport stops a sequencer whose event fails and tells its change
+	 * listeners, which can call this to find out why. It is cleared when
+	 * the sequence is started or stopped again.
+	 * 
+	 * @return the exception, or null if playback was not stopped by one
+	 */
+	public RuntimeException getPlaybackError() {
+		return playbackError;
+	}
+	
+	/**
+	 * Adds a listener that is told whenever the sequence starts or stops,
+	 * including when a sequence that does not loop reaches its end or an
+	 * event fails; see getPlaybackError.
+	 * Listeners may be called on the transport thread.
+	 * 
+	 * @param listener - to add
+	 */
+	public void addChangeListener(ChangeListener listener) {
+		synchronized(changeListeners) {
+			changeListeners.add(listener);
+		}
+	}
+	
+	/**
+	 * Tells every change listener that the sequence started or stopped.
+	 */
+	private void fireStateChanged() {
+		ChangeEvent event = new ChangeEvent(this);
+		synchronized(changeListeners) {
+			for(int i = 0; i < changeListeners.size(); i++)
+				changeListeners.get(i).stateChanged(event);
+		}
+	}
+	
 	/**
 	 * The elapsed time is the time since the sequence last started. 
 	 * If the sequence has not started or has ended, this returns zero.
-	 * The time is in tics, which differs from milliseconds if the
-	 * speed factor is not 1.0.
+	 * The time is in tics, converted with the tempo map, so it
+	 * differs from milliseconds unless the speed factor is 1.0. It is
+	 * measured with System.nanoTime, so it includes fractions of a tic.
 	 * 
 	 * @return elapsed time in tics
 	 */
 	public double getElapsedTime() {
 		if(running)
-			return millisToTics(System.currentTimeMillis() - startTime);
+			return nanosToTics(System.nanoTime() - startTime);
 		return 0.0;
 	}
 	
+	/**
+	 * Gets the transport that plays this sequencer.
+	 * 
+	 * @return the transport
+	 */
+	public Transport getTransport() {
+		return transport;
+	}
+	
 	/**
 	 * Begins executing the sequence from the beginning.
+	 * Nothing is scheduled up front; the transport walks the
+	 * sequence with a cursor, so this takes the same time no matter
+	 * how many events there are, apart from publishing any edits made
+	 * while stopped, which briefly takes this sequencer's lock.
+	 * When an event playing on the same transport starts the sequence,
+	 * such as a TrackEvent, the sequence starts at that event's scheduled time.
 	 */
 	public void start() {
-		startTime = System.currentTimeMillis();
-		running = true;
-		for(int i = 0; i < sequence.size(); i++) {
-			AudioEvent event = sequence.get(i);
-			timer.schedule(new EventExecutionTask(event, true), ticsToMillis(event.getTime()));
-			if(event instanceof NoteEvent)
-				timer.schedule(new EventExecutionTask(event, false), 
-						ticsToMillis(event.getTime() + ((NoteEvent)event).getDuration()));
-			if(event instanceof TrackEvent)
-				timer.schedule(new EventExecutionTask(event, false), 
-						ticsToMillis(event.getTime() + ((TrackEvent)event).getDuration()));
+		start(transport.now());
+	}
+	
+	/**
+	 * Begins executing the sequence from the beginning as if it started
+	 * at the given time. The transport uses this to start several
+	 * sequencers on one clock.
+	 * 
+	 * @param startNanos - start time from System.nanoTime
+	 */
+	void start(long startNanos) {
+		synchronized(playbackLock) {
+			if(player == null)
+				player = new Player();
+			if(!dispatched) {
+				transport.add(this);
+				dispatched = true;
+			}
+			playbackError = null;
+			startTime = startNanos;
+			running = true;
+			// Edits made while stopped were not published; from now on every edit is.
+			if(publishedStale) {
+				synchronized(this) {
+					if(publishedStale)
+						publish();
+				}
+			}
+			player.rewind();
+			fireStateChanged();
 		}
-		timer.schedule(new EndSignal(), ticsToMillis(length));
+		transport.wake();
 	}
 	
 	/**
 	 * Stops executing the sequence.
-	 * This calls cancel on every event in the sequence.
+	 * This calls cancel on every event that is still sounding and turns off
+	 * any notes from the note table that are still sounding. Events that
+	 * have not started or have completed are left alone, so this takes
+	 * time in proportion to the number of sounding notes.
 	 */
 	public void stop() {
-		startTime = -1;
-		running = false;
-		timer.cancel();
-		timer = new Timer();
-		for(int i = 0; i < sequence.size(); i++) {
-			sequence.get(i).cancel();
+		playbackError = null;
+		halt();
+	}
+	
+	/**
+	 * Stops executing the sequence because an event threw an exception,
+	 * and tells the change listeners. Called only on the transport thread.
+	 * 
+	 * @param error - thrown by the event
+	 */
+	void fail(RuntimeException error) {
+		playbackError = error;
+		halt();
+	}
+	
+	/**
+	 * Stops executing the sequence, cancelling whatever is sounding,
+	 * and tells the change listeners.
+	 */
+	private void halt() {
+		synchronized(playbackLock) {
+			startTime = -1;
+			running = false;
+			if(player != null)
+				player.releaseSounding();
+			fireStateChanged();
 		}
+		transport.wake();
 	}
 	
 	/**
 	 * Provide an Iterator for events in the sequence.
 	 * This allows using a for-each loop over the sequance.
+	 * The iterator throws a ConcurrentModificationException if the sequence
+	 * or its note table is changed or replaced while it is in use.
 	 * 
 	 * @return an iterator for events in the sequence.
 	 */
@@ -223,90 +615,809 @@ public class SimpleSequencer implements Iterable<AudioEvent>{
 	}
 	
 	/**
-	 * Converts a number of tics into milliseconds depending on the current tempo.
+	 * Gets a snapshot of the events in the sequence and its note table.
+	 * Later changes to the sequence do not affect the snapshot, so it can
+	 * be iterated while the sequence is edited or played, on any thread.
+	 * This takes time proportional to the number of channels; the next
+	 * change to the sequence copies only the blocks of events it touches.
+	 * 
+	 * @return the snapshot
+	 */
+	public Snapshot snapshot() {
+		if(publishedStale) {
+			synchronized(this) {
+				if(publishedStale)
+					publish();
+			}
+		}
+		return published;
+	}
+	
+	/**
+	 * Converts a position in tics into the milliseconds it is reached after
+	 * the start of the sequence, using the tempo map.
+	 * The result is rounded to the nearest millisecond.
 	 * 
-	 * @param tics - amount to convert
-	 * @return milliseconds amount
+	 * @param tics - position to convert
+	 * @return milliseconds from the start
 	 */
 	public int ticsToMillis(int tics) {
-		return (int)(tics / speedFactor);
+		return (int)Math.round(tempo.ticsToNanos(tics) / 1_000_000.0);
+	}
+	
+	/**
+	 * Converts a position in tics into the nanoseconds it is reached after
+	 * the start of the sequence, using the tempo map.
+	 * 
+	 * @param tics - position to convert, which may include fractions of a tic
+	 * @return nanoseconds from the start
+	 */
+	public long ticsToNanos(double tics) {
+		return tempo.ticsToNanos(tics);
+	}
+	
+	/**
+	 * Converts nanoseconds after the start of the sequence into the
+	 * position reached by then, using the tempo map.
+	 * 
+	 * @param nanoseconds - time from the start to convert
+	 * @return position in tics, including fractions of a tic
+	 */
+	public double nanosToTics(long nanoseconds) {
+		return tempo.nanosToTics(nanoseconds);
+	}
+	
+	/**
+	 * Gets the number of events executed since the lateness statistics were reset.
+	 * 
+	 * @return number of events measured
+	 */
+	public long getLatenessSampleCount() {
+		synchronized(playbackLock) {
+			return latenessCount;
+		}
 	}
 	
 	/**
-	 * Converts a number of milliseconds into tics depending on the current tempo.
+	 * Gets the largest observed lateness of an event, which is how long after
+	 * its scheduled time the event was actually executed.
 	 * 
-	 * @param milliseconds - amount to convert
-	 * @return tics amount
+	 * @return maximum lateness in nanoseconds, or 0 if no events were measured
+	 */
+	public long getMaxLatenessNanos() {
+		synchronized(playbackLock) {
+			return latenessMax;
+		}
+	}
+	
+	/**
+	 * Gets the average observed lateness of executed events.
+	 * 
+	 * @return mean lateness in nanoseconds, or 0 if no events were measured
+	 */
+	public double getMeanLatenessNanos() {
+		synchronized(playbackLock) {
+			if(latenessCount == 0)
+				return 0.0;
+			return latenessTotal / (double)latenessCount;
+		}
+	}
+	
+	/**
+	 * Clears the lateness statistics.
+	 */
+	public void resetLatenessStats() {
+		synchronized(playbackLock) {
+			latenessCount = 0;
+			latenessTotal = 0;
+			latenessMax = 0;
+		}
+	}
+	
+	/**
+	 * Converts milliseconds after the start of the sequence into the
+	 * position reached by then, using the tempo map.
+	 * 
+	 * @param milliseconds - time from the start to convert
+	 * @return position in tics
 	 */
 	public double millisToTics(long milliseconds) {
-		return milliseconds * speedFactor;
+		return tempo.nanosToTics(milliseconds * 1_000_000.0);
+	}
+	
+	/**
+	 * Adds one measurement to the lateness statistics.
+	 * Must be called while holding the playback lock.
+	 * 
+	 * @param lateness - nanoseconds between an event's deadline and its execution
+	 */
+	private void recordLateness(long lateness) {
+		latenessCount++;
+		latenessTotal += lateness;
+		if(lateness > latenessMax)
+			latenessMax = lateness;
+	}
+	
+	/**
+	 * Gets the time in tics at which an event completes.
+	 * Only NoteEvents, TrackEvents, and PatternInstances have a duration.
+	 * 
+	 * @param event - to get the end of
+	 * @return end time in tics
+	 */
+	private static int getEndTime(AudioEvent event) {
+		if(event instanceof NoteEvent)
+			return event.getTime() + ((NoteEvent)event).getDuration();
+		if(event instanceof TrackEvent)
+			return event.getTime() + ((TrackEvent)event).getDuration();
+		if(event instanceof PatternInstance)
+			return event.getTime() + ((PatternInstance)event).getDuration();
+		return event.getTime();
+	}
+	
+	/**
+	 * Executes and completes due events, then works out how long the
+	 * transport can wait before this sequencer needs it again. Once nothing
+	 * is playing or sounding, the transport stops dispatching the sequencer
+	 * until it starts again, so it doesn't keep sequencers that are no longer used.
+	 * Called only on the transport thread.
+	 * 
+	 * @return nanoseconds until something is next due, or -1 if nothing is playing
+	 */
+	long dispatch() {
+		synchronized(playbackLock) {
+			long wait = player == null ? -1 : player.dispatchDue();
+			if(wait < 0 && dispatched) {
+				transport.remove(this);
+				dispatched = false;
+			}
+			return wait;
+		}
 	}
 	
 	/**
-	 * A TimerTask that executes or completes an event.
+	 * Executes and completes events on the transport thread while the sequence is running.
+	 * It keeps a cursor to the next event in the sorted sequence and asks to be called
+	 * again at the earliest of that event, the next completion, or the end of the sequence,
+	 * but never later than the lookahead window so that edits are picked up quickly.
+	 * Events that have executed but not yet completed are kept in arrays sorted by
+	 * end time, so steady-state playback does not allocate. Notes from the note
+	 * table are read straight from the table with a second cursor.
+	 * 
+	 * The player reads events from the sequencer's published snapshot. When an edit
+	 * publishes a new one, the cursors are moved to the tic playback had reached at
+	 * the previous dispatch, since everything due by then has already run. Events
+	 * added before that tic are behind the playhead, so they wait for the next pass
+	 * instead of playing late. All events at one tic are due together, so they are
+	 * always executed in the same dispatch, and no event is skipped or played twice.
+	 * 
+	 * A PatternInstance is played by a PatternCursor of its own, which walks the
+	 * shared, unchanging pattern. The next event of each active cursor competes
+	 * with the sequence and the note table for the earliest deadline, so any
+	 * number of instances of one pattern can overlap. A TrackEvent or instance
+	 * inside a pattern starts another cursor over the pattern it was given when
+	 * the outer pattern was made, so no pattern or snapshot is made during
+	 * playback. Notes from patterns are played straight on their synthesizer,
+	 * like notes from the note table.
+	 * 
+	 * Every deadline is computed from the start of the pass rather than from the
+	 * previous wake-up, so timing errors do not accumulate.
 	 */
-	private class EventExecutionTask extends TimerTask{
-		private AudioEvent event;
-		private boolean isStarting;
+	private class Player {
+		// The longest the transport waits before looking at the sequence again
+		private static final long LOOKAHEAD_NANOS = 20_000_000L;
+		private Snapshot current; // the snapshot the cursors point into
+		private int cursor;
+		private int noteCursor;
+		private int eventTic; // every event before this tic has been executed this pass
+		private int noteTic; // every note before this tic has been played this pass
+		private int reachedTic; // first tic that was not yet due at the previous dispatch
+		// Parallel lists of executed events, sorted by end time
+		private BetterDynamicArray<AudioEvent> soundingEvents; // null for notes played directly
+		private BetterDynamicArray<SimpleSynthesizer> soundingSynths; // for notes played directly
+		private IntDynamicArray soundingChannels;
+		private IntDynamicArray soundingPitches;
+		private LongDynamicArray soundingEnds; // absolute end times from System.nanoTime
+		private BetterDynamicArray<PatternCursor> patterns; // instances being played this pass
+		private BetterDynamicArray<PatternCursor> spareCursors; // finished cursors, kept to be used again
+		
+		/**
+		 * Creates a player at the start of the sequence with nothing sounding.
+		 */
+		public Player() {
+			soundingEvents = new BetterDynamicArray<AudioEvent>(16, 2.0);
+			soundingSynths = new BetterDynamicArray<SimpleSynthesizer>(16, 2.0);
+			soundingChannels = new IntDynamicArray(16, 2.0);
+			soundingPitches = new IntDynamicArray(16, 2.0);
+			soundingEnds = new LongDynamicArray(16, 2.0);
+			patterns = new BetterDynamicArray<PatternCursor>(4, 2.0);
+			spareCursors = new BetterDynamicArray<PatternCursor>(4, 2.0);
+			rewind();
+		}
+		
+		/**
+		 * Moves the cursors back to the start of the sequence and stops
+		 * playing patterns. Events that are still sounding keep their end times.
+		 */
+		public void rewind() {
+			cursor = 0;
+			noteCursor = 0;
+			eventTic = 0;
+			noteTic = 0;
+			reachedTic = 0;
+			stopPatterns();
+		}
+		
+		/**
+		 * Moves the note cursor to the first note at or after a time,
+		 * so that a new note table joins playback where it is.
+		 * 
+		 * @param tics - current position in the sequence
+		 */
+		public void seekNotes(double tics) {
+			noteTic = Math.max(noteTic, (int)Math.ceil(tics));
+			if(current != null)
+				noteCursor = current.table.indexAtTime(noteTic);
+		}
+		
+		/**
+		 * Switches to the sequencer's latest snapshot if an edit published
+		 * a new one, keeping the position reached in the sequence.
+		 * Sounding events that were removed are cancelled.
+		 * This takes time in proportion to the number of sounding events,
+		 * not the length of the sequence.
+		 */
+		private void follow() {
+			Snapshot latest = published; // kept current by every edit while running
+			if(latest == current)
+				return;
+			current = latest;
+			cursor = current.events.indexAtTime(Math.max(eventTic, reachedTic));
+			noteCursor = current.table.indexAtTime(Math.max(noteTic, reachedTic));
+			cancelRemoved();
+		}
+		
+		/**
+		 * Finds the first tic of the current pass that is due after a time.
+		 * 
+		 * @param nanos - time from System.nanoTime
+		 * @return the tic
+		 */
+		private int firstTicAfter(long nanos) {
+			int tic = Math.max(0, (int)nanosToTics(nanos - startTime));
+			// Deadlines are rounded to the nanosecond, so correct the estimate.
+			while(startTime + ticsToNanos(tic) <= nanos)
+				tic++;
+			while(tic > 0 && startTime + ticsToNanos(tic - 1) > nanos)
+				tic--;
+			return tic;
+		}
+		
+		/**
+		 * Cancels sounding events that are no longer in the sequence and
+		 * drops them from the sounding lists, keeping the rest in order.
+		 * Patterns whose instance was removed stop, but notes they already
+		 * started are left to finish.
+		 */
+		private void cancelRemoved() {
+			int kept = 0;
+			for(int i = 0; i < soundingEnds.size(); i++) {
+				AudioEvent event = soundingEvents.get(i);
+				if(event != null && !current.events.contains(event)) {
+					joinBatch(event);
+					event.cancel();
+					continue;
+				}
+				soundingEvents.set(kept, event);
+				soundingSynths.set(kept, soundingSynths.get(i));
+				soundingChannels.set(kept, soundingChannels.get(i));
+				soundingPitches.set(kept, soundingPitches.get(i));
+				soundingEnds.set(kept, soundingEnds.get(i));
+				kept++;
+			}
+			soundingEvents.removeRange(kept, soundingEnds.size());
+			soundingSynths.removeRange(kept, soundingEnds.size());
+			soundingChannels.removeRange(kept, soundingEnds.size());
+			soundingPitches.removeRange(kept, soundingEnds.size());
+			soundingEnds.removeRange(kept, soundingEnds.size());
+			
+			for(int i = patterns.size() - 1; i >= 0; i--)
+				if(!current.events.contains(patterns.get(i).instance))
+					stopPattern(i);
+		}
+		
+		/**
+		 * Cancels every sounding event, turns off every note that was played
+		 * directly, and stops playing patterns. Used when the sequence is stopped.
+		 */
+		public void releaseSounding() {
+			for(int i = 0; i < soundingEnds.size(); i++) {
+				if(soundingEvents.get(i) != null)
+					soundingEvents.get(i).cancel();
+				else
+					soundingSynths.get(i).noteOff(soundingChannels.get(i), soundingPitches.get(i));
+			}
+			stopPatterns();
+			soundingEvents.clear();
+			soundingSynths.clear();
+			soundingChannels.clear();
+			soundingPitches.clear();
+			soundingEnds.clear();
+		}
+		
+		/**
+		 * Opens a batch on the synthesizer of an event if it plays notes.
+		 * 
+		 * @param event - about to be executed or completed
+		 */
+		private void joinBatch(AudioEvent event) {
+			if(event instanceof NoteEvent)
+				transport.joinBatch(((NoteEvent)event).getSynthesizer());
+		}
+		
+		/**
+		 * Completes and executes every event that is due.
+		 * 
+		 * @return nanoseconds until something is next due, or -1 if nothing is playing
+		 */
+		private long dispatchDue() {
+			synchronized(playbackLock) {
+				long now = System.nanoTime();
+				// Complete events that have reached their end time.
+				int completed = 0;
+				while(completed < soundingEnds.size() && soundingEnds.get(completed) <= now) {
+					AudioEvent event = soundingEvents.get(completed);
+					if(event != null) {
+						joinBatch(event);
+						event.complete();
+					} else {
+						SimpleSynthesizer synthesizer = soundingSynths.get(completed);
+						transport.joinBatch(synthesizer);
+						synthesizer.noteOff(soundingChannels.get(completed), soundingPitches.get(completed));
+					}
+					completed++;
+				}
+				if(completed > 0) {
+					soundingEvents.removeRange(0, completed);
+					soundingSynths.removeRange(0, completed);
+					soundingChannels.removeRange(0, completed);
+					soundingPitches.removeRange(0, completed);
+					soundingEnds.removeRange(0, completed);
+				}
+				
+				if(!running)
+					return soundingEnds.size() > 0 ? Math.max(0, soundingEnds.get(0) - now) : -1;
+				
+				// Execute events in the sequence, notes in the store, and events in
+				// playing patterns that are due, taking whichever is earliest first.
+				follow();
+				EventStore events = current.events;
+				NoteTable table = current.table;
+				while(true) {
+					long eventDue = Long.MAX_VALUE;
+					long noteDue = Long.MAX_VALUE;
+					long patternDue = Long.MAX_VALUE;
+					if(cursor < events.size())
+						eventDue = startTime + ticsToNanos(events.get(cursor).getTime());
+					if(noteCursor < table.size())
+						noteDue = startTime + ticsToNanos(table.getTime(noteCursor));
+					int next = earliestPattern();
+					if(next >= 0)
+						patternDue = startTime + ticsToNanos(patterns.get(next).tic);
+					
+					if(eventDue <= noteDue && eventDue <= patternDue && eventDue <= now) {
+						AudioEvent event = events.get(cursor);
+						joinBatch(event);
+						transport.setEventTime(eventDue);
+						event.execute();
+						transport.setEventTime(-1);
+						recordLateness(System.nanoTime() - eventDue);
+						if(event instanceof NoteEvent || event instanceof TrackEvent)
+							addSounding(event, null, 0, 0, startTime + ticsToNanos(getEndTime(event)));
+						else if(event instanceof PatternInstance)
+							startPattern((PatternInstance)event, ((PatternInstance)event).getPattern(), 
+									event.getTime(), Math.min(getEndTime(event), length), 0);
+						eventTic = event.getTime() + 1;
+						cursor++;
+					} else if(noteDue < eventDue && noteDue <= patternDue && noteDue <= now) {
+						int channel = table.getChannel(noteCursor);
+						int pitch = table.getPitch(noteCursor);
+						transport.joinBatch(table.getSynthesizer());
+						table.getSynthesizer().noteOn(channel, pitch);
+						recordLateness(System.nanoTime() - noteDue);
+						addSounding(null, table.getSynthesizer(), channel, pitch, 
+								startTime + ticsToNanos(table.getTime(noteCursor) + table.getDuration(noteCursor)));
+						noteTic = table.getTime(noteCursor) + 1;
+						noteCursor++;
+					} else if(patternDue < eventDue && patternDue < noteDue && patternDue <= now) {
+						PatternCursor pattern = patterns.get(next);
+						playNext(pattern, patternDue);
+						if(pattern.tic < 0)
+							stopPattern(next);
+					} else {
+						break;
+					}
+				}
+				reachedTic = firstTicAfter(now);
+				
+				// Restart or finish at the end of the sequence.
+				long end = startTime + ticsToNanos(length);
+				if(now >= end) {
+					if(loopSequence) {
+						startTime = end;
+						rewind();
+						return 0;
+					}
+					running = false;
+					stopPatterns();
+					fireStateChanged();
+					return soundingEnds.size() > 0 ? Math.max(0, soundingEnds.get(0) - now) : -1;
+				}
+				
+				// Sleep until the next event, completion, or the end of the sequence.
+				long nextDue = end;
+				if(cursor < events.size())
+					nextDue = Math.min(nextDue, startTime + ticsToNanos(events.get(cursor).getTime()));
+				if(noteCursor < table.size())
+					nextDue = Math.min(nextDue, startTime + ticsToNanos(table.getTime(noteCursor)));
+				int next = earliestPattern();
+				if(next >= 0)
+					nextDue = Math.min(nextDue, startTime + ticsToNanos(patterns.get(next).tic));
+				if(soundingEnds.size() > 0)
+					nextDue = Math.min(nextDue, soundingEnds.get(0));
+				// A late event can end before now, so never return a negative wait.
+				return Math.max(0, Math.min(LOOKAHEAD_NANOS, nextDue - now));
+			}
+		}
 		
 		/**
-		 * Creates a new task with the given state
-		 * @param event - to execute
-		 * @param isStarting - true to call execute, false to call complete
+		 * Finds the playing pattern whose next event is earliest.
+		 * There are only as many patterns as instances playing at once,
+		 * so they are simply compared one by one.
+		 * 
+		 * @return index in the playing patterns, or -1 if none are playing
 		 */
-		public EventExecutionTask(AudioEvent event, boolean isStarting) {
-			this.event = event;
-			this.isStarting = isStarting;
+		private int earliestPattern() {
+			int earliest = -1;
+			for(int i = 0; i < patterns.size(); i++)
+				if(earliest < 0 || patterns.get(i).tic < patterns.get(earliest).tic)
+					earliest = i;
+			return earliest;
 		}
 		
 		/**
-		 * Calls the event's execute or complete method.
+		 * Starts playing a pattern, unless it has nothing to play.
+		 * A cursor left by a finished pattern is used again if there is one,
+		 * so starting patterns does not allocate once playback has warmed up.
+		 * 
+		 * @param instance - in the sequence that the pattern is played for
+		 * @param pattern - to play
+		 * @param start - tic in the sequence where the pattern starts
+		 * @param end - tic in the sequence where the pattern stops
+		 * @param depth - how many patterns deep it is, where the sequence is at 0
 		 */
-		@Override
-		public void run() {
-			if(isStarting)
-				event.execute();
-			else
-				event.complete();
+		private void startPattern(PatternInstance instance, Pattern pattern, int start, int end, int depth) {
+			PatternCursor started;
+			if(spareCursors.size() > 0) {
+				started = spareCursors.get(spareCursors.size() - 1);
+				spareCursors.remove(spareCursors.size() - 1);
+			} else {
+				started = new PatternCursor();
+			}
+			started.begin(instance, pattern, start, end, depth);
+			if(started.tic >= 0) {
+				patterns.add(started);
+			} else {
+				started.end();
+				spareCursors.add(started);
+			}
+		}
+		
+		/**
+		 * Stops playing a pattern and keeps its cursor to be used again.
+		 * 
+		 * @param index - in the playing patterns
+		 */
+		private void stopPattern(int index) {
+			PatternCursor stopped = patterns.get(index);
+			patterns.remove(index);
+			stopped.end();
+			spareCursors.add(stopped);
+		}
+		
+		/**
+		 * Stops playing every pattern.
+		 */
+		private void stopPatterns() {
+			for(int i = patterns.size() - 1; i >= 0; i--)
+				stopPattern(i);
+		}
+		
+		/**
+		 * Plays the next event or note of a pattern and moves its cursor on.
+		 * Notes are played directly and cut off where the pass ends, and a
+		 * TrackEvent or instance in the pattern starts a pattern of its own.
+		 * 
+		 * @param pattern - cursor of the playing pattern
+		 * @param due - absolute time from System.nanoTime the event was due
+		 */
+		private void playNext(PatternCursor pattern, long due) {
+			int tic = pattern.tic;
+			int passEnd = pattern.getPassEnd();
+			if(pattern.isEventNext()) {
+				int index = pattern.cursor++;
+				AudioEvent event = pattern.events.get(index);
+				if(event instanceof NoteEvent) {
+					NoteEvent note = (NoteEvent)event;
+					transport.joinBatch(note.getSynthesizer());
+					note.getSynthesizer().noteOn(note.getChannel(), note.getPitch());
+					addSounding(null, note.getSynthesizer(), note.getChannel(), note.getPitch(),
+							startTime + ticsToNanos(Math.min(tic + note.getDuration(), passEnd)));
+				} else if(event instanceof TrackEvent) {
+					Pattern nested = pattern.pattern.getNested(index);
+					if(nested != null)
+						startPattern(pattern.instance, nested, 
+								tic, Math.min(tic + ((TrackEvent)event).getDuration(), passEnd), pattern.depth + 1);
+				} else if(event instanceof PatternInstance) {
+					if(pattern.depth < Pattern.MAX_DEPTH)
+						startPattern(pattern.instance, ((PatternInstance)event).getPattern(), 
+								tic, Math.min(tic + ((PatternInstance)event).getDuration(), passEnd), pattern.depth + 1);
+				} else {
+					transport.setEventTime(due);
+					event.execute();
+					transport.setEventTime(-1);
+				}
+			} else {
+				NoteTable table = pattern.table;
+				int index = pattern.noteCursor++;
+				transport.joinBatch(table.getSynthesizer());
+				table.getSynthesizer().noteOn(table.getChannel(index), table.getPitch(index));
+				addSounding(null, table.getSynthesizer(), table.getChannel(index), table.getPitch(index),
+						startTime + ticsToNanos(Math.min(tic + table.getDuration(index), passEnd)));
+			}
+			recordLateness(System.nanoTime() - due);
+			pattern.advance();
+		}
+		
+		/**
+		 * Records an executed event so that it completes at the given time.
+		 * The sounding lists stay sorted by end time.
+		 * 
+		 * @param event - that was executed, or null for a note played directly
+		 * @param synthesizer - playing the note played directly
+		 * @param channel - of the note played directly
+		 * @param pitch - of the note played directly
+		 * @param endNanos - absolute time from System.nanoTime to complete the event
+		 */
+		private void addSounding(AudioEvent event, SimpleSynthesizer synthesizer, int channel, int pitch, 
+				long endNanos) {
+			int index = soundingEnds.insertSorted(endNanos);
+			soundingEvents.insert(index, event);
+			soundingSynths.insert(index, synthesizer);
+			soundingChannels.insert(index, channel);
+			soundingPitches.insert(index, pitch);
 		}
 	}
 	
 	/**
-	 * A TimerTask that runs at the end of the sequence.
+	 * A position in a Pattern being played for a PatternInstance. Each playing
+	 * instance has its own cursor over the shared pattern, so instances never
+	 * affect each other. The cursor keeps the tic in the sequence of the next
+	 * event it will play, moving on to the next pass when a looping pattern
+	 * reaches its length.
 	 */
-	private class EndSignal extends TimerTask{
+	private static class PatternCursor {
+		private PatternInstance instance; // in the sequence, for nested patterns the outermost
+		private Pattern pattern;
+		private EventStore events;
+		private NoteTable table;
+		private int length;
+		private boolean looping;
+		private int start; // tic in the sequence where the current pass started
+		private int end; // tic in the sequence where the pattern stops
+		private int depth;
+		private int cursor;
+		private int noteCursor;
+		private int tic; // tic in the sequence of the next event, or -1 once finished
+		
+		/**
+		 * Creates a cursor that is not playing anything.
+		 */
+		public PatternCursor() {
+			tic = -1;
+		}
+		
+		/**
+		 * Moves the cursor to the first event of a pattern.
+		 * 
+		 * @param instance - in the sequence that the pattern is played for
+		 * @param pattern - to play
+		 * @param start - tic in the sequence where the pattern starts
+		 * @param end - tic in the sequence where the pattern stops
+		 * @param depth - how many patterns deep it is
+		 */
+		public void begin(PatternInstance instance, Pattern pattern, int start, int end, int depth) {
+			this.instance = instance;
+			this.pattern = pattern;
+			this.events = pattern.getEvents().events;
+			this.table = pattern.getEvents().table;
+			this.length = pattern.getLength();
+			this.looping = pattern.isLooping();
+			this.start = start;
+			this.end = end;
+			this.depth = depth;
+			cursor = 0;
+			noteCursor = 0;
+			advance();
+		}
+		
+		/**
+		 * Lets go of the pattern, so a cursor kept for later doesn't keep
+		 * an old pattern reachable.
+		 */
+		public void end() {
+			instance = null;
+			pattern = null;
+			events = null;
+			table = null;
+			tic = -1;
+		}
+		
+		/**
+		 * Gets the tic in the sequence where the current pass ends,
+		 * which is at the pattern's length or where it stops.
+		 * 
+		 * @return end of the pass
+		 */
+		public int getPassEnd() {
+			return Math.min(start + length, end);
+		}
+		
 		/**
-		 * Restarts the sequence if looping.
+		 * Checks whether the next thing to play is an event rather than
+		 * a note from the pattern's note table.
+		 * 
+		 * @return true for an event
 		 */
-		@Override
-		public void run() {
-			if(loopSequence)
-				start();
-			else
-				running = false;
+		public boolean isEventNext() {
+			return noteCursor >= table.size() || (cursor < events.size() 
+					&& events.get(cursor).getTime() <= table.getTime(noteCursor));
+		}
+		
+		/**
+		 * Works out the tic of the next event, starting another pass
+		 * of a looping pattern when this one has nothing left to play.
+		 */
+		public void advance() {
+			while(true) {
+				if(cursor < events.size() || noteCursor < table.size()) {
+					int time = isEventNext() ? events.get(cursor).getTime() : table.getTime(noteCursor);
+					if(time < getPassEnd() - start) {
+						tic = start + time;
+						return;
+					}
+				}
+				// Only loop while the first event of the next pass can be played.
+				if(!looping || length <= 0 || start + length >= end || getFirstTime() >= Math.min(length, end - start - length)) {
+					tic = -1;
+					return;
+				}
+				start += length;
+				cursor = 0;
+				noteCursor = 0;
+			}
+		}
+		
+		/**
+		 * Gets the time of the earliest event in the pattern.
+		 * 
+		 * @return time in tics, or Integer.MAX_VALUE for an empty pattern
+		 */
+		private int getFirstTime() {
+			int first = Integer.MAX_VALUE;
+			if(events.size() > 0)
+				first = events.get(0).getTime();
+			if(table.size() > 0)
+				first = Math.min(first, table.getTime(0));
+			return first;
 		}
 	}
 	
 	/**
-	 * An Iterator for the events in the sequence
+	 * An unchanging copy of the events in a sequence and its note table,
+	 * taken by the snapshot method.
+	 */
+	public class Snapshot implements Iterable<AudioEvent> {
+		private EventStore events;
+		private NoteTable table;
+		
+		/**
+		 * Creates a snapshot of the given read-only stores.
+		 * 
+		 * @param events - snapshot of the sequence
+		 * @param table - snapshot of the note table
+		 */
+		private Snapshot(EventStore events, NoteTable table) {
+			this.events = events;
+			this.table = table;
+		}
+		
+		/**
+		 * Gets the number of events in the snapshot, including
+		 * the notes in its note table.
+		 * 
+		 * @return number of events
+		 */
+		public int getEventCount() {
+			return events.size() + table.size();
+		}
+		
+		/**
+		 * Gets the events in the snapshot other than the notes in its note table.
+		 * 
+		 * @return the read-only events, in time order
+		 */
+		EventStore getEvents() {
+			return events;
+		}
+		
+		/**
+		 * Provide an Iterator for events in the snapshot.
+		 * 
+		 * @return an iterator for events in the snapshot
+		 */
+		public Iterator<AudioEvent> iterator() {
+			return new SequenceIterator(events, table, false);
+		}
+	}
+	
+	/**
+	 * An Iterator for the events in the sequence.
+	 * Notes from the note table are provided as views, in time order
+	 * with the other events.
 	 */
 	public class SequenceIterator implements Iterator<AudioEvent> {
 		private int nextIndex;
+		private int nextNoteIndex;
+		private EventStore events;
+		private NoteTable table;
+		private int expectedModCount;
+		private int expectedNoteModCount;
+		private boolean live; // true to also check that the stores are not replaced
 		
 		/**
 		 * Constructs an iterator providing events in this sequence.
 		 */
 		public SequenceIterator() {
+			this(sequence, notes, true);
+		}
+		
+		/**
+		 * Constructs an iterator providing events in the given stores.
+		 * 
+		 * @param events - events to provide
+		 * @param table - notes to provide
+		 * @param live - true if the stores are this sequence's own
+		 */
+		private SequenceIterator(EventStore events, NoteTable table, boolean live) {
+			this.events = events;
+			this.table = table;
+			this.live = live;
+			expectedModCount = events.getModCount();
+			expectedNoteModCount = table.getModCount();
 			nextIndex = 0;
+			nextNoteIndex = 0;
 		}
 		
 		/**
 		 * Returns true if there is a next available event.
 		 * 
 		 * @return true if there is a next available event
+		 * @throws ConcurrentModificationException if the sequence was changed
 		 */
 		public boolean hasNext() {
-			return nextIndex < sequence.size();
+			checkForComodification();
+			return nextIndex < events.size() || nextNoteIndex < table.size();
 		}
 		
 		/**
@@ -314,13 +1425,30 @@ public class SimpleSequencer implements Iterable<AudioEvent>{
 		 * 
 		 * @return the next available event
 		 * @throws NoSuchElementException if there is no available event
+		 * @throws ConcurrentModificationException if the sequence was changed
 		 */
 		public AudioEvent next() {
 			if(!hasNext())
 				throw new NoSuchElementException();
-			nextIndex++;
-			return sequence.get(nextIndex - 1);
+			if(nextNoteIndex >= table.size() || (nextIndex < events.size() 
+					&& events.get(nextIndex).getTime() <= table.getTime(nextNoteIndex))) {
+				nextIndex++;
+				return events.get(nextIndex - 1);
+			}
+			nextNoteIndex++;
+			return table.getView(nextNoteIndex - 1);
 		}
 		
+		/**
+		 * Throws an exception if the stores were changed or replaced
+		 * since the iterator was created.
+		 * 
+		 * @throws ConcurrentModificationException if the sequence was changed
+		 */
+		private void checkForComodification() {
+			if(events.getModCount() != expectedModCount || table.getModCount() != expectedNoteModCount
+					|| (live && (events != sequence || table != notes)))
+				throw new ConcurrentModificationException();
+		}
 	}
-}
+}
\ No newline at end of file
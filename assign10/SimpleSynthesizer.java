@@ -3,9 +3,12 @@ package assign10;
 import java.util.ArrayList;
 
 import javax.sound.midi.Instrument;
+import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.MidiChannel;
 import javax.sound.midi.MidiSystem;
 import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
 import javax.sound.midi.Synthesizer;
 
 /**
@@ -25,6 +28,13 @@ public class SimpleSynthesizer {
 	private Synthesizer synth;
 	private MidiChannel[] channels;
 	private Instrument[] instruments;
+	private boolean[] validChannels; // computed once, indexed by channel
+	
+	// Batched mode: notes go through one Receiver instead of the MidiChannels
+	private volatile Receiver receiver; // null unless batched mode is on; changed only under the lock
+	private boolean batchOpen;
+	private ShortMessage[] messages; // made once and reused for every note
+	private int batchCount; // messages collected in the open batch
 	
 	/**
 	 * Creates a new SimpleSynthesizer that uses the default soundbank.
@@ -58,6 +68,38 @@ public class SimpleSynthesizer {
 			channels = null;
 			instruments = null;
 		}
+		validChannels = findValidChannels();
+	}
+	
+	/**
+	 * Creates a SimpleSynthesizer that plays on the given channels instead
+	 * of opening the midi system. This lets the cost of sending notes be
+	 * measured without a sound device, for example with channels that only
+	 * count calls. Instruments can't be changed.
+	 * 
+	 * @param channels - to play on
+	 */
+	SimpleSynthesizer(MidiChannel[] channels) {
+		synth = null;
+		this.channels = channels;
+		instruments = new Instrument[channels.length];
+		validChannels = findValidChannels();
+	}
+	
+	/**
+	 * Creates a SimpleSynthesizer in batched mode that sends notes to the
+	 * given Receiver instead of opening the midi system, so that batched
+	 * mode can be measured without a sound device. Turning batched mode off
+	 * plays on the given channels instead.
+	 * 
+	 * @param channels - to play on once batched mode is off
+	 * @param receiver - to send notes to in batched mode
+	 */
+	SimpleSynthesizer(MidiChannel[] channels, Receiver receiver) {
+		this(channels);
+		this.receiver = receiver;
+		messages = newMessages(32);
+		batchCount = 0;
 	}
 	
 	/**
@@ -90,16 +132,43 @@ public class SimpleSynthesizer {
 	 */
 	public ArrayList<Integer> getValidChannelIndices() {
 		ArrayList<Integer> indices = new ArrayList<Integer>();
-		if(channels != null) {
-			for(int i = 0; i < channels.length; i++)
-				if(channels[i] != null)
-					indices.add(i);
-		} else {
+		for(int i = 0; i < validChannels.length; i++)
+			if(validChannels[i])
+				indices.add(i);
+		return indices;
+	}
+	
+	/**
+	 * Determines whether a channel index is valid.
+	 * This is the same as checking getValidChannelIndices, but it
+	 * does not create a list.
+	 * 
+	 * @param channel - index to check
+	 * @return true if the channel index is valid
+	 */
+	public boolean isValidChannel(int channel) {
+		return channel >= 0 && channel < validChannels.length && validChannels[channel];
+	}
+	
+	/**
+	 * Finds which channel indices are valid. The channels don't change
+	 * after the synthesizer is opened, so this only needs to be done once.
+	 * If the midi system is not available, channels 0 to 15 are valid.
+	 * 
+	 * @return array where index i is true if channel i is valid
+	 */
+	private boolean[] findValidChannels() {
+		if(channels == null) {
 			// Provide channels 0 to 15 if the midi system is not available
+			boolean[] valid = new boolean[16];
 			for(int i = 0; i < 16; i++)
-				indices.add(i);
+				valid[i] = true;
+			return valid;
 		}
-		return indices;
+		boolean[] valid = new boolean[channels.length];
+		for(int i = 0; i < channels.length; i++)
+			valid[i] = channels[i] != null;
+		return valid;
 	}
 	
 	/**
@@ -112,9 +181,9 @@ public class SimpleSynthesizer {
 	 * @throws IllegalArgumentException if either index is invalid
 	 */
 	public void setInstrument(int channel, int instrumentIndex) {
-		if(channels == null)
+		if(channels == null || synth == null)
 			return;
-		if(!getValidChannelIndices().contains(channel)) 
+		if(!isValidChannel(channel)) 
 			throw new IllegalArgumentException("Invalid channel");
 		Instrument[] instr = synth.getLoadedInstruments();
 		if(instrumentIndex > instr.length || instrumentIndex < 0)
@@ -135,7 +204,7 @@ public class SimpleSynthesizer {
 	public void setVolume(int channel, int volume) {
 		if(channels == null)
 			return;
-		if(!getValidChannelIndices().contains(channel)) 
+		if(!isValidChannel(channel)) 
 			throw new IllegalArgumentException("Invalid channel");
 		if(volume > 127)
 			volume = 127;
@@ -156,7 +225,7 @@ public class SimpleSynthesizer {
 	public int getVolume(int channel) {
 		if(channels == null)
 			return 0;
-		if(!getValidChannelIndices().contains(channel)) 
+		if(!isValidChannel(channel)) 
 			throw new IllegalArgumentException("Invalid channel");
 		// Note: 7 is the control number for volume (midi 1.0 spec)
 		return channels[channel].getController(7);
@@ -172,7 +241,7 @@ public class SimpleSynthesizer {
 	public void setMute(int channel, boolean mute) {
 		if(channels == null)
 			return;
-		if(!getValidChannelIndices().contains(channel)) 
+		if(!isValidChannel(channel)) 
 			throw new IllegalArgumentException("Invalid channel");
 		channels[channel].setMute(mute);
 	}
@@ -194,7 +263,7 @@ public class SimpleSynthesizer {
 	public void setPitchBend(int channel, int amount) {
 		if(channels == null)
 			return;
-		if(!getValidChannelIndices().contains(channel)) 
+		if(!isValidChannel(channel)) 
 			throw new IllegalArgumentException("Invalid channel");
 		if(amount > 8191)
 			amount = 8191;
@@ -203,21 +272,141 @@ public class SimpleSynthesizer {
 		channels[channel].setPitchBend(amount + 8192);
 	}
 	
+	/**
+	 * Turns batched mode on or off.
+	 * In batched mode, noteOn and noteOff send messages through a single
+	 * Receiver of the midi synthesizer. Between beginBatch and flushBatch the
+	 * messages are collected and then sent one after another, so notes that
+	 * are due at the same time reach the synthesizer together instead of
+	 * being spread out by the work done between them. Each message is still
+	 * a separate call to the Receiver; batching groups the calls in time but
+	 * doesn't make them any cheaper. Outside a batch each message is sent
+	 * right away. Messages are sent without a timestamp, so the
+	 * synthesizer handles each one as it is sent instead of keeping it, which
+	 * lets the same few messages be reused for every note without allocating.
+	 * 
+	 * This has no effect if the midi system is not available. If the
+	 * synthesizer can't provide a Receiver, batched mode stays off.
+	 * 
+	 * @param batched - true to turn batched mode on, false to turn it off
+	 */
+	public synchronized void setBatched(boolean batched) {
+		if(batched == (receiver != null))
+			return;
+		if(batched) {
+			if(synth == null)
+				return;
+			try {
+				receiver = synth.getReceiver();
+				messages = newMessages(32);
+				batchCount = 0;
+			} catch (MidiUnavailableException e) {
+				System.out.println("Couldn't get a midi receiver. Batched mode is not available.");
+				receiver = null;
+			}
+		} else {
+			flushBatch();
+			receiver.close();
+			receiver = null;
+			messages = null;
+		}
+	}
+	
+	/**
+	 * Makes empty messages to fill in and send.
+	 * 
+	 * @param count - number of messages
+	 * @return the messages
+	 */
+	private static ShortMessage[] newMessages(int count) {
+		ShortMessage[] messages = new ShortMessage[count];
+		for(int i = 0; i < count; i++)
+			messages[i] = new ShortMessage();
+		return messages;
+	}
+	
+	/**
+	 * Determines whether batched mode is on.
+	 * 
+	 * @return true if notes are sent through a Receiver
+	 */
+	public synchronized boolean isBatched() {
+		return receiver != null;
+	}
+	
+	/**
+	 * Starts collecting notes into a batch.
+	 * This has no effect unless batched mode is on.
+	 */
+	public synchronized void beginBatch() {
+		if(receiver != null)
+			batchOpen = true;
+	}
+	
+	/**
+	 * Sends every collected note through the Receiver, one call per note,
+	 * and ends the batch. This has no effect unless a batch was begun.
+	 */
+	public synchronized void flushBatch() {
+		if(!batchOpen)
+			return;
+		for(int i = 0; i < batchCount; i++)
+			receiver.send(messages[i], -1);
+		batchCount = 0;
+		batchOpen = false;
+	}
+	
+	/**
+	 * Sends a channel message in batched mode, or adds it to the open batch.
+	 * The message is one of the reused messages, so this only allocates when
+	 * a batch holds more notes than any batch before it.
+	 * 
+	 * @param command - the message command, such as ShortMessage.NOTE_ON
+	 * @param channel - of the message
+	 * @param data1 - first data byte
+	 * @param data2 - second data byte
+	 * @return false if batched mode is off, so the message should go to the channel instead
+	 */
+	private synchronized boolean sendBatched(int command, int channel, int data1, int data2) {
+		// Checked again under the lock, since batched mode may have been turned off since the caller looked.
+		if(receiver == null)
+			return false;
+		if(batchCount == messages.length) {
+			ShortMessage[] more = newMessages(batchCount * 2);
+			System.arraycopy(messages, 0, more, 0, batchCount);
+			messages = more;
+		}
+		ShortMessage message = messages[batchOpen ? batchCount : 0];
+		try {
+			message.setMessage(command, channel, data1, data2);
+		} catch (InvalidMidiDataException e) {
+			return true; // same as an invalid pitch on a MidiChannel, which is ignored
+		}
+		if(batchOpen)
+			batchCount++;
+		else
+			receiver.send(message, -1);
+		return true;
+	}
+	
 	/**
 	 * Begins playing a given pitch on the given channel.
 	 * The note will not end until noteOff is called for the same pitch and channel.
 	 * 
 	 * This has no effect if the midi system is not available or if the
-	 * channel index is not valid.
+	 * channel index is not valid. It does not allocate, so it is safe to
+	 * call for every note during playback.
 	 * 
 	 * @param channel - to use
 	 * @param pitch - to turn on
 	 */
 	public void noteOn(int channel, int pitch) {
-		if(channels != null && getValidChannelIndices().contains(channel)) {
-			channels[channel].noteOn(pitch, 100); // velocity is always 100
+		if(channels != null && isValidChannel(channel)) {
+			// velocity is always 100
 			// Including a velocity parameter is possible, but it
 			// is omitted for simplicity.
+			if(receiver == null || !sendBatched(ShortMessage.NOTE_ON, channel, pitch, 100))
+				channels[channel].noteOn(pitch, 100);
 		}
 	}
 	
@@ -232,8 +421,9 @@ public class SimpleSynthesizer {
 	 * @param pitch - to turn off
 	 */
 	public void noteOff(int channel, int pitch) {
-		if(channels != null && getValidChannelIndices().contains(channel)) {
-			channels[channel].noteOff(pitch);
+		if(channels != null && isValidChannel(channel)) {
+			if(receiver == null || !sendBatched(ShortMessage.NOTE_OFF, channel, pitch, 0))
+				channels[channel].noteOff(pitch);
 		}
 	}
 	
@@ -77,7 +77,8 @@ public abstract class SketchingPanel extends JPanel {
 	}
 	
 	/**
-	 * Sets the playback speed for the track.
+	 * Sets the playback speed for the track at its start. Tempo changes
+	 * later in the track keep their ratio to it.
 	 * @param tempo - in beats per minute
 	 */
 	public void setTempo(int tempo) {
@@ -0,0 +1,124 @@
+package assign10;
+
+/**
+ * Compiles a song into one sorted timeline, so that the song plays as a single
+ * sequence instead of starting a track's sequencer each time a TrackEvent
+ * executes.
+ *
+ * Each TrackEvent in the song becomes a PatternInstance of its track. Every
+ * instance of a track shares one immutable Pattern, taken from the track in
+ * constant time, so placing a track many times costs one small event per
+ * placement rather than a copy of the track's notes. The song's sequencer
+ * plays each instance with a cursor of its own and merges the events of the
+ * instances that are playing as it goes, so overlapping instances never
+ * affect each other. TrackEvents inside a track already have patterns of
+ * their own in the track's pattern, and are played the same way.
+ *
+ * Merging the instances while playing, rather than into one flat list of
+ * notes ahead of time, keeps a compile proportional to the number of
+ * TrackEvents instead of the number of notes they play, and lets a long
+ * song reuse its tracks' notes without copying them.
+ *
+ * The result is cached. It is only compiled again once the song, a track
+ * it used, or a track nested in one of those has been edited or changed
+ * its length or looping. Those checks compare sequencer snapshots, so they
+ * take constant time per track. Every track is assumed to play at the
+ * song's tempo.
+ *
+ * @author River Whitten
+ * @version 11.22.24
+ */
+public class SongCompiler {
+
+	private SimpleSequencer.Snapshot songSnapshot; // of the song when last compiled
+	private int songLength;
+	private BetterDynamicArray<SimpleSequencer> tracks; // tracks used when last compiled
+	private BetterDynamicArray<Pattern> patterns; // pattern of each track
+
+	/**
+	 * Creates a compiler that has not compiled anything.
+	 */
+	public SongCompiler() {
+		tracks = new BetterDynamicArray<SimpleSequencer>();
+		patterns = new BetterDynamicArray<Pattern>();
+	}
+
+	/**
+	 * Checks whether the last compiled timeline still matches a song
+	 * and every track it uses, including tracks nested in those.
+	 *
+	 * @param song - sequencer holding the song's TrackEvents
+	 * @return true if compiling again would give the same timeline
+	 */
+	public boolean isCurrent(SimpleSequencer song) {
+		if(songSnapshot == null || song.snapshot() != songSnapshot || song.getLength() != songLength)
+			return false;
+		for(int i = 0; i < tracks.size(); i++)
+			if(!patterns.get(i).isCurrent(tracks.get(i)))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Compiles a song into one sorted timeline, with a PatternInstance
+	 * for each TrackEvent, and remembers what it was compiled from.
+	 * Patterns of tracks that have not changed since the last compile
+	 * are used again.
+	 *
+	 * @param song - sequencer holding the song's TrackEvents
+	 * @return a new, sorted list of events
+	 */
+	public BetterDynamicArray<AudioEvent> compile(SimpleSequencer song) {
+		BetterDynamicArray<SimpleSequencer> usedTracks = new BetterDynamicArray<SimpleSequencer>();
+		BetterDynamicArray<Pattern> usedPatterns = new BetterDynamicArray<Pattern>();
+		songSnapshot = song.snapshot();
+		songLength = song.getLength();
+
+		BetterDynamicArray<AudioEvent> timeline = new BetterDynamicArray<AudioEvent>();
+		for(AudioEvent event : songSnapshot) {
+			if(event.getTime() >= songLength)
+				break;
+			int remaining = songLength - event.getTime();
+			if(event instanceof TrackEvent) {
+				TrackEvent track = (TrackEvent)event;
+				Pattern pattern = getPattern(track.getSequence(), usedTracks, usedPatterns);
+				timeline.add(new PatternInstance(track.getTime(), track.getName(), track.getChannel(),
+						Math.min(track.getDuration(), remaining), pattern));
+			} else if(event instanceof NoteEvent && ((NoteEvent)event).getDuration() > remaining) {
+				NoteEvent note = (NoteEvent)event;
+				timeline.add(new NoteEvent(note.getTime(), note.getName(), note.getChannel(),
+						remaining, note.getPitch(), note.getSynthesizer()));
+			} else {
+				timeline.add(event);
+			}
+		}
+		tracks = usedTracks;
+		patterns = usedPatterns;
+		return timeline;
+	}
+
+	/**
+	 * Gets the pattern of a track used by the timeline, once per track.
+	 * The pattern from the last compile is kept if it is still current.
+	 *
+	 * @param track - used by a TrackEvent
+	 * @param usedTracks - tracks used so far in this compile
+	 * @param usedPatterns - pattern of each track used so far
+	 * @return the pattern to play the track with
+	 */
+	private Pattern getPattern(SimpleSequencer track, BetterDynamicArray<SimpleSequencer> usedTracks,
+			BetterDynamicArray<Pattern> usedPatterns) {
+		for(int i = 0; i < usedTracks.size(); i++)
+			if(usedTracks.get(i) == track)
+				return usedPatterns.get(i);
+		Pattern pattern = null;
+		for(int i = 0; i < tracks.size(); i++)
+			if(tracks.get(i) == track && patterns.get(i).isCurrent(track))
+				pattern = patterns.get(i);
+		if(pattern == null)
+			pattern = new Pattern(track);
+		usedTracks.add(track);
+		usedPatterns.add(pattern);
+		return pattern;
+	}
+}
@@ -7,15 +7,22 @@ import java.util.ArrayList;
  * Represents the editor for a song consisting of multiple tracks.
  * It extends GridCanvas to interpret the grid's vertical axis as tracks 
  * and horizontal axis as time.
+ * The TrackEvents placed on the grid are kept in an arrangement, and the
+ * song is played from a timeline compiled from it by a SongCompiler, so no
+ * track sequencer is started while the song plays. Edits to the song or its
+ * tracks are heard the next time the song is compiled.
  * 
  * @author River Whitten
  * @version 2024-11-22
  */
-public class SongEditor extends GridCanvas {
+public class SongEditor extends GridCanvas implements PlayheadAnimator.Playhead {
 
-    private SimpleSequencer sequencer;
+    private SimpleSequencer sequencer; // plays the compiled timeline
+    private SimpleSequencer arrangement; // the TrackEvents on the grid
+    private SongCompiler compiler;
     private BetterDynamicArray<TrackPanel> trackPanels;
     private int currentTrack;
+    private int playheadX;
 
     /**
      * Constructs a SongEditor instance with a specified width and height.
@@ -29,15 +36,19 @@ public class SongEditor extends GridCanvas {
         super(width, height, 1, 1, 1, 1);  // Default, will be updated later
         this.trackPanels = new BetterDynamicArray<>();
         this.sequencer = new SimpleSequencer(16);  // Default length of 16
+        this.arrangement = new SimpleSequencer(16);
+        this.compiler = new SongCompiler();
         this.currentTrack = 0;
         addMouseListener(this);
         addMouseMotionListener(this);
+        PlayheadAnimator.getShared().register(this);
     }
 
     // Setter and Getter methods
 
     public void setLength(int length) {
         sequencer.setLength(length);
+        arrangement.setLength(length);
         setColumns(length);  // Set grid columns based on sequencer length
     }
 
@@ -45,16 +56,42 @@ public class SongEditor extends GridCanvas {
         return sequencer.getLength();
     }
 
+    /**
+     * Gets the sequencer that plays the compiled song.
+     * Call compile first so that it has the latest events.
+     *
+     * @return the playing sequencer
+     */
     public SimpleSequencer getSequencer() {
         return sequencer;
     }
 
+    /**
+     * Gets the sequencer holding the TrackEvents placed on the grid.
+     *
+     * @return the arrangement
+     */
+    public SimpleSequencer getArrangement() {
+        return arrangement;
+    }
+
+    /**
+     * Compiles the arrangement into the playing sequencer, unless
+     * nothing changed since it was last compiled.
+     */
+    public void compile() {
+        if (!compiler.isCurrent(arrangement)) {
+            sequencer.updateSequence(compiler.compile(arrangement));
+        }
+    }
+
     public void clear() {
+        arrangement.clear();
         sequencer.clear();
     }
 
     public void setEvents(BetterDynamicArray<AudioEvent> newEvents) {
-        sequencer.updateSequence(newEvents);
+        arrangement.updateSequence(newEvents);
     }
 
     public void setTrackList(BetterDynamicArray<TrackPanel> trackList) {
@@ -66,10 +103,31 @@ public class SongEditor extends GridCanvas {
     public void paintComponent(Graphics g) {
         super.paintComponent(g);
 
-        // Draw time indicator (could be more sophisticated, e.g., moving line)
+        // Draw time indicator where the playhead animator last placed it
+        g.drawLine(playheadX, 0, playheadX, getHeight());  // Vertical line indicating time
+    }
+
+    // PlayheadAnimator.Playhead methods
+
+    @Override
+    public int computePlayheadX() {
         int time = (int) sequencer.getElapsedTime();
-        int x = (int) (getWidth() * (time / (double) sequencer.getLength()));
-        g.drawLine(x, 0, x, getHeight());  // Vertical line indicating time
+        return (int) (getGridWidth() * (time / (double) sequencer.getLength()));
+    }
+
+    @Override
+    public int getPlayheadX() {
+        return playheadX;
+    }
+
+    @Override
+    public void setPlayheadX(int x) {
+        playheadX = x;
+    }
+
+    @Override
+    public int getPlayheadWidth() {
+        return 1;
     }
 
     // GridCanvas's abstract methods
@@ -94,15 +152,16 @@ public class SongEditor extends GridCanvas {
     public void onCellReleased(int row, int col, int rowSpan, int colSpan) {
         // Create a new TrackEvent when a cell is released
         TrackEvent newEvent = new TrackEvent(col, "Track Event", currentTrack, colSpan, trackPanels.get(currentTrack).getSequencer());
-        sequencer.add(newEvent);  // Add TrackEvent to sequencer
+        arrangement.add(newEvent);  // Add TrackEvent to the arrangement
     }
 
     @Override
     public void onCellRemoved(int row, int col) {
-        // Remove TrackEvent associated with the cell
-        for (AudioEvent event : sequencer) {
-            if (event instanceof TrackEvent && event.getChannel() == row && event.getTime() == col) {
-                sequencer.remove(event);
+        // Remove TrackEvents associated with the cell
+        BetterDynamicArray<AudioEvent> events = arrangement.getEvents(row, col, col + 1);
+        for (int i = 0; i < events.size(); i++) {
+            if (events.get(i) instanceof TrackEvent) {
+                arrangement.remove(events.get(i));
             }
         }
     }
@@ -96,6 +96,23 @@ public class SongPanel extends SketchingPanel implements ActionListener, ChangeL
         songEditor.clear();
     }
 
+    /**
+     * Compiles the song into one timeline, then begins playing it.
+     */
+    @Override
+    public void play() {
+        compile();
+        super.play();
+    }
+
+    /**
+     * Compiles the song's TrackEvents into the timeline played by its sequencer.
+     * Nothing is done if neither the song nor its tracks changed.
+     */
+    public void compile() {
+        songEditor.compile();
+    }
+
     /**
      * Sets the track list in the song editor.
      * 
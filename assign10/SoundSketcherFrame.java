@@ -2,6 +2,12 @@ package assign10;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import javax.swing.event.ChangeEvent;
@@ -27,6 +33,7 @@ public class SoundSketcherFrame extends JFrame implements ActionListener, Change
     private JTabbedPane tracksPane;
     private JSlider tempoSlider;
     private JToggleButton playButton, loopButton;
+    private JButton openButton, saveButton, importButton, exportButton, renderButton;
     
     private SimpleSynthesizer synthesizer;
 
@@ -39,6 +46,7 @@ public class SoundSketcherFrame extends JFrame implements ActionListener, Change
         super("SoundSketcher");
         
         synthesizer = new SimpleSynthesizer();
+        synthesizer.setBatched(true); // notes due together are sent one right after another
 
         // Initialize the song panel and track panels
         songPanel = new SongPanel(PANEL_WIDTH, PANEL_HEIGHT);
@@ -46,6 +54,8 @@ public class SoundSketcherFrame extends JFrame implements ActionListener, Change
         
         // Add the first track panel
         trackPanels.add(new TrackPanel(PANEL_WIDTH, PANEL_HEIGHT, 0, synthesizer));
+        reportPlaybackErrors(songPanel.getSequencer(), "The song");
+        reportPlaybackErrors(trackPanels.get(0).getSequencer(), "Track 0");
 
         // Set up the control panel
         JPanel controlPanel = new JPanel();
@@ -71,6 +81,27 @@ public class SoundSketcherFrame extends JFrame implements ActionListener, Change
         controlPanel.add(new JLabel("Tempo (BPM):"));
         controlPanel.add(tempoSlider);
 
+        // Song file buttons
+        openButton = new JButton("Open Song");
+        openButton.addActionListener(this);
+        controlPanel.add(openButton);
+        saveButton = new JButton("Save Song");
+        saveButton.addActionListener(this);
+        controlPanel.add(saveButton);
+
+        // MIDI file buttons
+        importButton = new JButton("Import MIDI");
+        importButton.addActionListener(this);
+        controlPanel.add(importButton);
+        exportButton = new JButton("Export MIDI");
+        exportButton.addActionListener(this);
+        controlPanel.add(exportButton);
+
+        // Audio file button
+        renderButton = new JButton("Export WAV");
+        renderButton.addActionListener(this);
+        controlPanel.add(renderButton);
+
         // Set up the tabbed pane
         tracksPane = new JTabbedPane();
         tracksPane.addTab("Song", songPanel);
@@ -104,6 +135,7 @@ public class SoundSketcherFrame extends JFrame implements ActionListener, Change
             newTrack.setTempo(tempoSlider.getValue());
             newTrack.setLoop(loopButton.isSelected());
             trackPanels.add(newTrack);
+            reportPlaybackErrors(newTrack.getSequencer(), "Track " + (trackPanels.size() - 1));
 
             // Add the new track panel to the tabbed pane
             tracksPane.insertTab("Track " + (trackPanels.size() - 1), null,
@@ -114,9 +146,219 @@ public class SoundSketcherFrame extends JFrame implements ActionListener, Change
         addingTrack = false;
     }
 
+    /**
+     * Shows a message when an event fails and the transport stops a
+     * sequencer because of it.
+     *
+     * @param sequencer the sequencer to watch
+     * @param name the name of what it plays, for the message
+     */
+    private void reportPlaybackErrors(SimpleSequencer sequencer, String name) {
+        sequencer.addChangeListener(e -> {
+            RuntimeException error = sequencer.getPlaybackError();
+            if (error != null) {
+                // Listeners may be called on the transport thread.
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                        name + " stopped playing: " + error, "Playback Error", JOptionPane.ERROR_MESSAGE));
+            }
+        });
+    }
+
+    /**
+     * Writes the notes of every track to a song file.
+     * Each track's notes keep the channel of that track.
+     *
+     * @param file the song file to write
+     * @throws IOException if the file can't be written
+     */
+    public void saveSong(File file) throws IOException {
+        NoteStore notes = new NoteStore(synthesizer);
+        int length = 0;
+        for (int i = 0; i < trackPanels.size(); i++) {
+            SimpleSequencer sequencer = trackPanels.get(i).getSequencer();
+            length = Math.max(length, sequencer.getLength());
+            for (AudioEvent event : sequencer.snapshot()) {
+                if (event instanceof NoteEvent) {
+                    notes.add((NoteEvent) event);
+                }
+            }
+        }
+        MappedSong.write(file, length, notes);
+    }
+
+    /**
+     * Loads a song file into the tracks, replacing their events.
+     * Notes go to the track matching their channel, and tracks are added as needed.
+     * Each track plays its channel's notes straight from the mapped file, so no
+     * event object is made for a note, and only the notes within the track
+     * length are given cells in the grid.
+     *
+     * @param file the song file to open
+     * @throws IOException if the file can't be read or is not a song file
+     */
+    public void openSong(File file) throws IOException {
+        MappedSong song = MappedSong.open(file, synthesizer);
+        int tracks = 0;
+        for (int channel = 0; channel < MappedSong.CHANNELS && channel < maxTracks; channel++) {
+            if (song.getNotes(channel).size() > 0) {
+                tracks = channel + 1;
+            }
+        }
+
+        while (trackPanels.size() < tracks) {
+            addTrack();
+        }
+        int length = trackLengthFor(song.getLength());
+        for (int i = 0; i < trackPanels.size(); i++) {
+            trackPanels.get(i).clear();
+            trackPanels.get(i).setLength(length);
+            if (i < tracks) {
+                trackPanels.get(i).setNotes(song.getNotes(i));
+            }
+        }
+    }
+
+    /**
+     * Reads a MIDI file into the tracks, replacing their events.
+     * Each part of the file goes to the track with the same number,
+     * and tracks are added as needed. The tempo changes in the file are
+     * applied to every track and the song, and the tempo slider is set to the
+     * tempo the file starts at, as far as the slider goes.
+     *
+     * @param file the MIDI file to read
+     * @throws IOException if the file can't be read or is not a supported MIDI file
+     */
+    public void importMidi(File file) throws IOException {
+        for (int i = 0; i < trackPanels.size(); i++) {
+            trackPanels.get(i).clear();
+        }
+        int[] lastTime = {0};
+        // MIDI files play at 120 beats per minute until they set a tempo
+        TempoMap[] tempo = {new TempoMap(120 / 60000.0)};
+        try (InputStream in = new FileInputStream(file)) {
+            MidiFile.read(in, synthesizer, new MidiFile.BatchHandler() {
+                @Override
+                public void onBatch(int part, BetterDynamicArray<AudioEvent> batch) {
+                    while (trackPanels.size() <= part) {
+                        addTrack();
+                    }
+                    trackPanels.get(part).addEvents(batch);
+                    lastTime[0] = Math.max(lastTime[0], batch.get(batch.size() - 1).getTime() + 1);
+                }
+
+                @Override
+                public void onTempo(int time, double beatsPerMinute) {
+                    tempo[0] = tempo[0].withChange(time, beatsPerMinute / 60000.0);
+                }
+            });
+        }
+        int startTempo = (int) Math.round(tempo[0].getSpeedFactor(0) * 60000);
+        tempoSlider.setValue(Math.max(tempoSlider.getMinimum(),
+                Math.min(tempoSlider.getMaximum(), startTempo)));
+        int length = trackLengthFor(lastTime[0]);
+        for (int i = 0; i < trackPanels.size(); i++) {
+            trackPanels.get(i).setLength(length);
+            trackPanels.get(i).getSequencer().setTempoMap(tempo[0]);
+        }
+        songPanel.getSequencer().setTempoMap(tempo[0]);
+    }
+
+    /**
+     * Writes every track to a type 1 MIDI file at the current tempo.
+     *
+     * @param file the MIDI file to write
+     * @throws IOException if the file can't be written
+     */
+    public void exportMidi(File file) throws IOException {
+        BetterDynamicArray<SimpleSequencer> parts = new BetterDynamicArray<>();
+        for (int i = 0; i < trackPanels.size(); i++) {
+            parts.add(trackPanels.get(i).getSequencer());
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            MidiFile.write(out, parts, tempoSlider.getValue());
+        }
+    }
+
+    /**
+     * Renders the song to a WAV file at the current tempo, faster than real time.
+     *
+     * @param file the WAV file to write
+     * @throws IOException if the file can't be written
+     */
+    public void exportWav(File file) throws IOException {
+        songPanel.compile();
+        OfflineRenderer.render(songPanel.getSequencer(), file);
+    }
+
+    /**
+     * Finds the shortest track length offered by the track panels that can hold a song.
+     * If the song is longer than any track can be, the user is warned that
+     * the notes past the longest length won't be played.
+     *
+     * @param songLength the length of the song in tics
+     * @return a valid track length, at most TrackPanel.MAX_LENGTH
+     */
+    private int trackLengthFor(int songLength) {
+        int length = 4;
+        while (length < songLength && length < TrackPanel.MAX_LENGTH) {
+            length *= 2;
+        }
+        if (songLength > length) {
+            JOptionPane.showMessageDialog(this, "The song is " + songLength + " tics long, but tracks can only be "
+                    + length + " tics long. Notes past tic " + length + " won't be played.",
+                    "Song Too Long", JOptionPane.WARNING_MESSAGE);
+        }
+        return length;
+    }
+
+    /**
+     * Asks the user for a file and opens, saves, imports, exports, or renders with it.
+     * Errors are reported in a dialog.
+     *
+     * @param source the button that was pressed
+     */
+    private void chooseFile(Object source) {
+        JFileChooser chooser = new JFileChooser();
+        boolean save = source == saveButton || source == exportButton || source == renderButton;
+        int result = save ? chooser.showSaveDialog(this) : chooser.showOpenDialog(this);
+        if (result != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = chooser.getSelectedFile();
+        try {
+            if (source == openButton) {
+                openSong(file);
+            } else if (source == saveButton) {
+                saveSong(file);
+            } else if (source == importButton) {
+                importMidi(file);
+            } else if (source == exportButton) {
+                exportMidi(file);
+            } else {
+                exportWav(file);
+            }
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage(), "File Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Gets the sequencers of every track.
+     *
+     * @return the track sequencers, in track order
+     */
+    private BetterDynamicArray<SimpleSequencer> getTrackSequencers() {
+        BetterDynamicArray<SimpleSequencer> sequencers = new BetterDynamicArray<>();
+        for (int i = 0; i < trackPanels.size(); i++) {
+            sequencers.add(trackPanels.get(i).getSequencer());
+        }
+        return sequencers;
+    }
+
     /**
      * Handles actions performed by the play and loop buttons.
-     * Starts or stops playback for each track panel when the play button is toggled,
+     * Starts or stops every track together on the shared transport when the play
+     * button is toggled, so the tracks play from one clock and stay aligned,
      * and sets the loop state for all track panels when the loop button is toggled.
      *
      * @param event the action event triggered by the button
@@ -128,22 +370,19 @@ public class SoundSketcherFrame extends JFrame implements ActionListener, Change
             // Play/Stop action
             if (playButton.isSelected()) {
                 playButton.setText("Stop");
-                // Call play() on each track panel using get() by index
-                for (int i = 0; i < trackPanels.size(); i++) {
-                    trackPanels.get(i).play();
-                }
+                Transport.getShared().start(getTrackSequencers());
             } else {
                 playButton.setText("Play");
-                // Call stop() on each track panel using get() by index
-                for (int i = 0; i < trackPanels.size(); i++) {
-                    trackPanels.get(i).stop();
-                }
+                Transport.getShared().stop(getTrackSequencers());
             }
         } else if (source == loopButton) {
             // Set the loop feature for each track panel using get() by index
             for (int i = 0; i < trackPanels.size(); i++) {
                 trackPanels.get(i).setLoop(loopButton.isSelected());
             }
+        } else if (source == openButton || source == saveButton
+                || source == importButton || source == exportButton || source == renderButton) {
+            chooseFile(source);
         }
     }
 
@@ -0,0 +1,200 @@
+package assign10;
+
+import java.util.Arrays;
+
+/**
+ * The tempo of a sequence along its timeline, as a list of tempo changes.
+ * Each change sets the number of tics per millisecond from its tic until
+ * the next change, and the first change is always at tic 0.
+ *
+ * Alongside each change the map keeps the time at which it is reached, which
+ * is the running sum of the lengths of the segments before it. Converting a
+ * tic to a time, or a time to a tic, is then a binary search for the segment
+ * followed by one linear step, taking O(log n) time for n changes.
+ *
+ * A map never changes once created, so playback can read it while the event
+ * dispatch thread builds a new one with withChange.
+ *
+ * @author River Whitten
+ * @version 11.22.24
+ */
+public class TempoMap {
+
+	private final int[] tics; // tic of each change, in increasing order
+	private final double[] speeds; // tics per millisecond from each change
+	private final double[] nanos; // time each change is reached, from tic 0
+
+	/**
+	 * Creates a map with one tempo for the whole timeline.
+	 *
+	 * @param ticsPerMillisecond - number of tics in one millisecond
+	 * @throws IllegalArgumentException if the tempo is not positive
+	 */
+	public TempoMap(double ticsPerMillisecond) {
+		this(new int[] {0}, new double[] {checkSpeed(ticsPerMillisecond)});
+	}
+
+	/**
+	 * Creates a map of the given changes, working out when each is reached.
+	 *
+	 * @param tics - tic of each change, starting at 0 and increasing
+	 * @param speeds - tics per millisecond from each change
+	 */
+	private TempoMap(int[] tics, double[] speeds) {
+		this.tics = tics;
+		this.speeds = speeds;
+		nanos = new double[tics.length];
+		for(int i = 1; i < tics.length; i++)
+			nanos[i] = nanos[i - 1] + (tics[i] - tics[i - 1]) * 1_000_000.0 / speeds[i - 1];
+	}
+
+	/**
+	 * Makes sure a tempo can be used.
+	 *
+	 * @param ticsPerMillisecond - tempo to check
+	 * @return the tempo
+	 * @throws IllegalArgumentException if the tempo is not positive
+	 */
+	private static double checkSpeed(double ticsPerMillisecond) {
+		if(!(ticsPerMillisecond > 0))
+			throw new IllegalArgumentException("Tempo must be positive: " + ticsPerMillisecond);
+		return ticsPerMillisecond;
+	}
+
+	/**
+	 * Creates a copy of this map with the tempo changed from a tic onward,
+	 * until the next change after it. A change already at that tic is replaced.
+	 * This takes linear time, since the times of later changes move.
+	 *
+	 * @param tic - where the tempo changes
+	 * @param ticsPerMillisecond - number of tics in one millisecond from the tic
+	 * @return the new map
+	 * @throws IllegalArgumentException if the tic is negative or the tempo is not positive
+	 */
+	public TempoMap withChange(int tic, double ticsPerMillisecond) {
+		if(tic < 0)
+			throw new IllegalArgumentException("Negative tic: " + tic);
+		checkSpeed(ticsPerMillisecond);
+		int index = Arrays.binarySearch(tics, tic);
+		if(index >= 0) {
+			double[] newSpeeds = speeds.clone();
+			newSpeeds[index] = ticsPerMillisecond;
+			return new TempoMap(tics.clone(), newSpeeds);
+		}
+		index = -index - 1;
+		int[] newTics = new int[tics.length + 1];
+		double[] newSpeeds = new double[tics.length + 1];
+		System.arraycopy(tics, 0, newTics, 0, index);
+		System.arraycopy(speeds, 0, newSpeeds, 0, index);
+		newTics[index] = tic;
+		newSpeeds[index] = ticsPerMillisecond;
+		System.arraycopy(tics, index, newTics, index + 1, tics.length - index);
+		System.arraycopy(speeds, index, newSpeeds, index + 1, tics.length - index);
+		return new TempoMap(newTics, newSpeeds);
+	}
+
+	/**
+	 * Creates a copy of this map with every tempo multiplied by a factor,
+	 * so that the changes keep their places and their ratios to each other.
+	 *
+	 * @param factor - to multiply each tempo by
+	 * @return the new map
+	 * @throws IllegalArgumentException if the factor is not positive
+	 */
+	public TempoMap scaled(double factor) {
+		checkSpeed(factor);
+		double[] newSpeeds = new double[speeds.length];
+		for(int i = 0; i < speeds.length; i++)
+			newSpeeds[i] = checkSpeed(speeds[i] * factor);
+		return new TempoMap(tics.clone(), newSpeeds);
+	}
+
+	/**
+	 * Gets the number of tempo changes, including the one at tic 0.
+	 *
+	 * @return number of changes
+	 */
+	public int getChangeCount() {
+		return tics.length;
+	}
+
+	/**
+	 * Gets the tic of a tempo change.
+	 *
+	 * @param index - of the change
+	 * @return tic where the change starts
+	 */
+	public int getChangeTic(int index) {
+		return tics[index];
+	}
+
+	/**
+	 * Gets the tempo at a tic.
+	 *
+	 * @param tic - position in the timeline
+	 * @return number of tics in one millisecond at the tic
+	 */
+	public double getSpeedFactor(double tic) {
+		return speeds[segmentAtTic(tic)];
+	}
+
+	/**
+	 * Gets the time at which a tic is reached, counting from tic 0.
+	 *
+	 * @param tic - position in the timeline, which may include fractions of a tic
+	 * @return nanoseconds from the start of the timeline
+	 */
+	public long ticsToNanos(double tic) {
+		int i = segmentAtTic(tic);
+		return Math.round(nanos[i] + (tic - tics[i]) * 1_000_000.0 / speeds[i]);
+	}
+
+	/**
+	 * Gets the tic reached at a time, counting from tic 0.
+	 *
+	 * @param nanoseconds - from the start of the timeline
+	 * @return position in the timeline, including fractions of a tic
+	 */
+	public double nanosToTics(double nanoseconds) {
+		int i = segmentAtTime(nanoseconds);
+		return tics[i] + (nanoseconds - nanos[i]) * speeds[i] / 1_000_000.0;
+	}
+
+	/**
+	 * Finds the last change at or before a tic.
+	 *
+	 * @param tic - position in the timeline
+	 * @return index of the change, 0 for a tic before the timeline
+	 */
+	private int segmentAtTic(double tic) {
+		int low = 0;
+		int high = tics.length - 1;
+		while(low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if(tics[mid] <= tic)
+				low = mid;
+			else
+				high = mid - 1;
+		}
+		return low;
+	}
+
+	/**
+	 * Finds the last change reached at or before a time.
+	 *
+	 * @param nanoseconds - from the start of the timeline
+	 * @return index of the change, 0 for a time before the timeline
+	 */
+	private int segmentAtTime(double nanoseconds) {
+		int low = 0;
+		int high = nanos.length - 1;
+		while(low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if(nanos[mid] <= nanoseconds)
+				low = mid;
+			else
+				high = mid - 1;
+		}
+		return low;
+	}
+}
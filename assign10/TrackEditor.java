@@ -4,7 +4,7 @@ import java.awt.Color;
 import java.awt.Graphics;
 import java.util.Vector;
 
-public class TrackEditor extends GridCanvas {
+public class TrackEditor extends GridCanvas implements PlayheadAnimator.Playhead {
 	
 	private SimpleSynthesizer synthesizer;
 	private SimpleSequencer sequencer;
@@ -12,25 +12,31 @@ public class TrackEditor extends GridCanvas {
 	private int width;
 	private int height;
 	private int currentPitch;
+	private int playheadX;
 	
 	
 	public TrackEditor(int width, int height, int trackNumber, SimpleSynthesizer synthesizer) {
-		super(120, 1, 120, 120, 4, 4);
+		super(width, height, 120, 32, 4, 4);
 		
 		this.width = width;
 		this.height = height;
 		this.trackNumber = trackNumber;
 		this.synthesizer = synthesizer;
-		this.sequencer = new SimpleSequencer(32);
+		this.sequencer = new SimpleSequencer(32, synthesizer);
 		
 		addMouseListener(this);
 		addMouseMotionListener(this);
+		PlayheadAnimator.getShared().register(this);
 		
 	}
 	
 	public void setLength(int length) {
+		int oldLength = sequencer.getLength();
 		sequencer.setLength(length);
 		setColumns(length);
+		// Notes past the old end, such as in an opened song, come into view
+		if(length > oldLength)
+			addCells(sequencer.getNotes(), oldLength, length);
 	}
 	
 	public int getLength() {
@@ -69,27 +75,73 @@ public class TrackEditor extends GridCanvas {
 	
 	public void setEvents(BetterDynamicArray<AudioEvent> newEvents) {
 		clear();
+		sequencer.updateSequence(addNotes(newEvents));
+		
+	}
+	
+	// Plays a table of notes where it is kept, such as in a song file, with cells only for notes within the length
+	public void setNotes(NoteTable notes) {
+		clear();
+		sequencer.setNotes(notes);
+		addCells(notes, 0, getLength());
+	}
+	
+	public void addEvents(BetterDynamicArray<AudioEvent> newEvents) {
+		BetterDynamicArray<AudioEvent> otherEvents = addNotes(newEvents);
+		if(otherEvents.size() > 0)
+			sequencer.add(otherEvents);
+	}
+	
+	// Adds the notes among the events to the grid and the note table, and returns the other events
+	private BetterDynamicArray<AudioEvent> addNotes(BetterDynamicArray<AudioEvent> newEvents) {
+		BetterDynamicArray<AudioEvent> otherEvents = new BetterDynamicArray<AudioEvent>();
 		for (int i = 0; i < newEvents.size(); i ++) {
 			AudioEvent event = newEvents.get(i); //access each event
 			if(event instanceof NoteEvent) {
 				NoteEvent note = (NoteEvent) event;
 				addCell(note.getPitch(), note.getTime(), 1, note.getDuration());
+				sequencer.addNote(note.getTime(), note.getDuration(), note.getPitch(), note.getChannel());
+			} else {
+				otherEvents.add(event);
 			}
 		}
-		sequencer.updateSequence(newEvents);
-		
+		return otherEvents;
+	}
+	
+	// Adds cells for the notes in the table that start from one time until before another
+	private void addCells(NoteTable notes, int from, int to) {
+		for (int i = notes.indexAtTime(from); i < notes.size() && notes.getTime(i) < to; i ++) {
+			addCell(notes.getPitch(i), notes.getTime(i), 1, notes.getDuration(i));
+		}
 	}
 	
 	public void paintComponent(Graphics g) {
 		super.paintComponent(g);
 		
-		int timeIndicator = (int) (sequencer.getElapsedTime() * width / sequencer.getLength());
 		g.setColor(Color.RED);
-		g.fillRect(timeIndicator,  0,  5, getHeight());
-		
-		repaint();
+		g.fillRect(playheadX,  0,  getPlayheadWidth(), getHeight());
 		
 	}
+	
+	@Override
+	public int computePlayheadX() {
+		return (int) (sequencer.getElapsedTime() * getGridWidth() / sequencer.getLength());
+	}
+	
+	@Override
+	public int getPlayheadX() {
+		return playheadX;
+	}
+	
+	@Override
+	public void setPlayheadX(int x) {
+		playheadX = x;
+	}
+	
+	@Override
+	public int getPlayheadWidth() {
+		return 5;
+	}
 
 	@Override
 	public void onCellPressed(int row, int col, int rowSpan, int colSpan) {
@@ -111,8 +163,7 @@ public class TrackEditor extends GridCanvas {
 	@Override
 	public void onCellReleased(int row, int col, int rowSpan, int colSpan) {
 		if(colSpan > 0 ) {
-			NoteEvent note = new NoteEvent(col, "Note", trackNumber, colSpan, row, synthesizer);
-			sequencer.add(note);
+			sequencer.addNote(col, colSpan, row, trackNumber);
 			synthesizer.noteOff(row, trackNumber);
 		}
 		
@@ -120,15 +171,7 @@ public class TrackEditor extends GridCanvas {
 
 	@Override
 	public void onCellRemoved(int row, int col) {
-		for(AudioEvent event : sequencer) {
-			if(event instanceof NoteEvent) {
-				NoteEvent note = (NoteEvent) event;
-				if(note.getPitch() == row && note.getTime() == col) {
-					sequencer.remove(note);
-					break;
-				}
-			}
-		}
+		sequencer.removeNote(col, row);
 		
 	}
 	
@@ -27,7 +27,8 @@ public class TrackEvent extends AudioEvent {
 
     @Override
     public void complete() {
-        // No implementation for now
+        // The track only plays for the duration of the event
+        sequencer.stop();
     }
 
     @Override
@@ -45,9 +46,19 @@ public class TrackEvent extends AudioEvent {
         return result;
     }
 
+	/**
+	 * Compares this track event with another audio event for ordering.
+	 * Events are ordered by time, and at the same time track events and
+	 * pattern instances come after change events and note events.
+	 *
+	 * @param other the other audio event to compare to
+	 * @return a negative integer, zero, or a positive integer as this event is less than, equal to, or greater than the other event
+	 */
 	@Override
-	public int compareTo(AudioEvent o) {
-		// TODO Auto-generated method stub
-		return 0;
+	public int compareTo(AudioEvent other) {
+		if (getTime() != other.getTime()) {
+			return Integer.compare(getTime(), other.getTime());
+		}
+		return (other instanceof TrackEvent || other instanceof PatternInstance) ? 0 : 1;
 	}
 }
@@ -16,6 +16,10 @@ import java.awt.event.ActionListener;
 public class TrackPanel extends SketchingPanel implements ActionListener, ChangeListener {
     private TrackEditor trackEditor;
     private JToggleButton muteButton;
+    private JButton zoomInButton, zoomOutButton;
+    // Longest track length the length spinner offers, in tics
+    public static final int MAX_LENGTH = 4096;
+
     private JSpinner lengthSpinner;
     private JSlider volumeSlider;
     private JComboBox<String> instrumentComboBox;
@@ -41,8 +45,8 @@ public class TrackPanel extends SketchingPanel implements ActionListener, Change
         // Set up layout
         setLayout(new BorderLayout());
 
-        // Add the TrackEditor to the main area
-        add(trackEditor, BorderLayout.CENTER);
+        // Add the TrackEditor to the main area, scrolling when it is zoomed in
+        add(new JScrollPane(trackEditor), BorderLayout.CENTER);
 
         // Create the control panel
         JPanel controlPanel = new JPanel();
@@ -54,7 +58,7 @@ public class TrackPanel extends SketchingPanel implements ActionListener, Change
         controlPanel.add(muteButton);
 
         // Length spinner
-        lengthSpinner = new JSpinner(new SpinnerListModel(new Integer[]{4, 8, 16, 32, 64, 128, 256, 512}));
+        lengthSpinner = new JSpinner(new SpinnerListModel(new Integer[]{4, 8, 16, 32, 64, 128, 256, 512, 1024, 2048, MAX_LENGTH}));
         lengthSpinner.addChangeListener(this);
         controlPanel.add(new JLabel("Track Length:"));
         controlPanel.add(lengthSpinner);
@@ -75,6 +79,14 @@ public class TrackPanel extends SketchingPanel implements ActionListener, Change
         controlPanel.add(new JLabel("Instrument:"));
         controlPanel.add(instrumentComboBox);
 
+        // Zoom buttons
+        zoomInButton = new JButton("Zoom In");
+        zoomInButton.addActionListener(this);
+        controlPanel.add(zoomInButton);
+        zoomOutButton = new JButton("Zoom Out");
+        zoomOutButton.addActionListener(this);
+        controlPanel.add(zoomOutButton);
+
         // Add the control panel to the edge
         add(controlPanel, BorderLayout.SOUTH);
     }
@@ -101,6 +113,25 @@ public class TrackPanel extends SketchingPanel implements ActionListener, Change
         trackEditor.clear();
     }
 
+    /**
+     * Clears the track and plays a table of notes where it is kept,
+     * such as in a song file, without an event object for each note.
+     * 
+     * @param notes The notes to play.
+     */
+    public void setNotes(NoteTable notes) {
+        trackEditor.setNotes(notes);
+    }
+
+    /**
+     * Adds events to the track without removing the ones already there.
+     * 
+     * @param events The events to add.
+     */
+    public void addEvents(BetterDynamicArray<AudioEvent> events) {
+        trackEditor.addEvents(events);
+    }
+
     // TrackPanel-specific methods
     /**
      * Gets the current volume of the track.
@@ -143,8 +174,8 @@ public class TrackPanel extends SketchingPanel implements ActionListener, Change
 
     // Handle button and combo box actions
     /**
-     * Handles action events for the mute button and instrument combo box.
-     * Toggles mute status and updates the instrument selection.
+     * Handles action events for the mute button, instrument combo box, and zoom buttons.
+     * Toggles mute status, updates the instrument selection, or zooms the track editor.
      * 
      * @param event The action event triggered by a user interaction.
      */
@@ -158,6 +189,10 @@ public class TrackPanel extends SketchingPanel implements ActionListener, Change
         } else if (source == instrumentComboBox) {
             setInstrument(instrumentComboBox.getSelectedIndex(), instrumentNumber);
             requestFocus(); // Return focus to the panel
+        } else if (source == zoomInButton) {
+            trackEditor.zoom(2);
+        } else if (source == zoomOutButton) {
+            trackEditor.zoom(0.5);
         }
     }
 
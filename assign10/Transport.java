@@ -0,0 +1,222 @@
+package assign10;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The master clock that plays every SimpleSequencer. One scheduling thread
+ * dispatches the due events of all running sequencers, so the number of
+ * threads does not grow with the number of tracks, and notes that several
+ * tracks play at the same moment on a batched synthesizer are sent one right
+ * after another at the end of the dispatch.
+ *
+ * Sequencers started together with start(BetterDynamicArray) share one start
+ * time taken from System.nanoTime, and a sequencer started by an event, such as
+ * a track started by a TrackEvent, starts at that event's scheduled time rather
+ * than when the thread got to it. Every deadline is computed from those start
+ * times, so tracks stay aligned however long they play.
+ *
+ * If an event throws an exception, only the sequencer playing it is stopped,
+ * and its change listeners are told; getPlaybackError gives the exception.
+ *
+ * A sequencer is dispatched from when it starts until nothing it played is
+ * still sounding, so sequencers that are no longer used are not kept.
+ *
+ * The thread parks until shortly before the earliest deadline of any sequencer
+ * and spins for the remainder, since parking alone can overshoot by more than
+ * a millisecond. It parks without a timeout while nothing is playing.
+ *
+ * @author River Whitten
+ * @version 11.22.24
+ */
+public class Transport implements Runnable {
+
+	// Deadlines closer than this are waited for by spinning instead of parking
+	private static final long SPIN_NANOS = 500_000L;
+
+	private static Transport shared;
+
+	private Thread thread;
+	private volatile SimpleSequencer[] sequencers; // replaced, never changed, when one is added or removed
+	private SimpleSynthesizer[] batchSynths; // synthesizers with a batch open
+	private int batchSynthCount;
+	private long eventTime; // scheduled time of the event being executed, or -1
+
+	/**
+	 * Creates a transport with no sequencers. Its thread is started
+	 * when the first sequencer is added.
+	 */
+	public Transport() {
+		sequencers = new SimpleSequencer[0];
+		batchSynths = new SimpleSynthesizer[4];
+		batchSynthCount = 0;
+		eventTime = -1;
+	}
+
+	/**
+	 * Gets the transport that sequencers use unless given another one.
+	 *
+	 * @return the shared transport
+	 */
+	public static synchronized Transport getShared() {
+		if(shared == null)
+			shared = new Transport();
+		return shared;
+	}
+
+	/**
+	 * Starts several sequencers from the beginning at exactly the same time.
+	 *
+	 * @param toStart - sequencers to start, which should use this transport
+	 */
+	public void start(BetterDynamicArray<SimpleSequencer> toStart) {
+		long startNanos = now();
+		for(int i = 0; i < toStart.size(); i++)
+			toStart.get(i).start(startNanos);
+	}
+
+	/**
+	 * Stops several sequencers.
+	 *
+	 * @param toStop - sequencers to stop
+	 */
+	public void stop(BetterDynamicArray<SimpleSequencer> toStop) {
+		for(int i = 0; i < toStop.size(); i++)
+			toStop.get(i).stop();
+	}
+
+	/**
+	 * Gets the time a sequencer started now should count from. While the
+	 * transport thread executes an event, this is the time the event was
+	 * scheduled for, so that anything the event starts stays on the clock.
+	 * Otherwise it is the current System.nanoTime.
+	 *
+	 * @return time from System.nanoTime
+	 */
+	public long now() {
+		if(Thread.currentThread() == thread && eventTime >= 0)
+			return eventTime;
+		return System.nanoTime();
+	}
+
+	/**
+	 * Adds a sequencer to be dispatched, starting the thread if needed.
+	 * Sequencers are added when they start, unless they are still dispatched.
+	 *
+	 * @param sequencer - to dispatch
+	 */
+	synchronized void add(SimpleSequencer sequencer) {
+		SimpleSequencer[] added = Arrays.copyOf(sequencers, sequencers.length + 1);
+		added[sequencers.length] = sequencer;
+		sequencers = added;
+		if(thread == null) {
+			thread = new Thread(this, "Transport playback");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MAX_PRIORITY);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Stops dispatching a sequencer, once it has nothing playing or sounding.
+	 *
+	 * @param sequencer - to stop dispatching
+	 */
+	synchronized void remove(SimpleSequencer sequencer) {
+		for(int i = 0; i < sequencers.length; i++) {
+			if(sequencers[i] == sequencer) {
+				SimpleSequencer[] removed = new SimpleSequencer[sequencers.length - 1];
+				System.arraycopy(sequencers, 0, removed, 0, i);
+				System.arraycopy(sequencers, i + 1, removed, i, removed.length - i);
+				sequencers = removed;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Wakes the thread so that it looks at every sequencer again,
+	 * such as after one starts or stops.
+	 */
+	void wake() {
+		if(thread != null)
+			LockSupport.unpark(thread);
+	}
+
+	/**
+	 * Records the scheduled time of the event about to be executed.
+	 * Only called on the transport thread.
+	 *
+	 * @param nanos - time from System.nanoTime, or -1 once the event is done
+	 */
+	void setEventTime(long nanos) {
+		eventTime = nanos;
+	}
+
+	/**
+	 * Opens a batch on a synthesizer for the current dispatch, if it
+	 * is in batched mode and does not already have one open.
+	 * Only called on the transport thread.
+	 *
+	 * @param synthesizer - about to receive a note, may be null
+	 */
+	void joinBatch(SimpleSynthesizer synthesizer) {
+		if(synthesizer == null || !synthesizer.isBatched())
+			return;
+		for(int i = 0; i < batchSynthCount; i++)
+			if(batchSynths[i] == synthesizer)
+				return;
+		if(batchSynthCount == batchSynths.length)
+			batchSynths = Arrays.copyOf(batchSynths, batchSynthCount * 2);
+		batchSynths[batchSynthCount++] = synthesizer;
+		synthesizer.beginBatch();
+	}
+
+	/**
+	 * Repeatedly dispatches due events, then parks until the next one.
+	 */
+	@Override
+	public void run() {
+		while(true) {
+			long waitNanos = dispatch();
+			if(waitNanos < 0) {
+				LockSupport.park(this);
+			} else if(waitNanos > SPIN_NANOS) {
+				LockSupport.parkNanos(this, waitNanos - SPIN_NANOS);
+			} else {
+				long deadline = System.nanoTime() + waitNanos;
+				while(System.nanoTime() < deadline)
+					Thread.onSpinWait();
+			}
+		}
+	}
+
+	/**
+	 * Dispatches the due events of every sequencer, then flushes the notes
+	 * collected by synthesizers in batched mode.
+	 *
+	 * @return nanoseconds until something is next due, or -1 if nothing is playing
+	 */
+	private long dispatch() {
+		long waitNanos = -1;
+		for(SimpleSequencer sequencer : sequencers) {
+			long wait;
+			try {
+				wait = sequencer.dispatch();
+			} catch (RuntimeException e) {
+				// One broken event shouldn't silence every other track.
+				eventTime = -1;
+				sequencer.fail(e);
+				continue;
+			}
+			if(wait >= 0 && (waitNanos < 0 || wait < waitNanos))
+				waitNanos = wait;
+		}
+		for(int i = 0; i < batchSynthCount; i++) {
+			batchSynths[i].flushBatch();
+			batchSynths[i] = null;
+		}
+		batchSynthCount = 0;
+		return waitNanos;
+	}
+}
@@ -0,0 +1,166 @@
+package assign10;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Checks that playback does not allocate, so it never makes garbage for each
+ * note it plays. Three paths are measured: sending notes straight to a
+ * SimpleSynthesizer's channels, sending them in batches through its Receiver,
+ * and a sequencer playing looping patterns on the transport thread. The
+ * notes go to channels and a receiver that do nothing, and the bytes each
+ * thread allocates are read from the JVM before and after.
+ *
+ * Exits with status 1 if any path allocates. The build runs this as part
+ * of its checks.
+ * <pre>
+ * gradle allocationCheck
+ * </pre>
+ *
+ * @author River Whitten
+ * @version 11.22.24
+ */
+public class AllocationCheck {
+
+	private static final int WARMUP_NOTES = 200_000;
+	private static final int MEASURED_NOTES = 1_000_000;
+	// Notes collected before each batch is flushed
+	private static final int BATCH_NOTES = 8;
+	private static final long WARMUP_PLAYBACK_MILLIS = 2000;
+	private static final long MEASURED_PLAYBACK_MILLIS = 2000;
+	// Bytes the measurement itself may allocate, such as for reading the counter
+	private static final long SLACK_BYTES = 1024;
+
+	private static com.sun.management.ThreadMXBean threads;
+	private static boolean failed;
+
+	/**
+	 * Measures each path and reports how much it allocated.
+	 *
+	 * @param args - not used
+	 * @throws InterruptedException if interrupted while playback is measured
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		if(!threads.isThreadAllocatedMemorySupported()) {
+			System.out.println("This JVM can't measure allocation; skipping the check.");
+			return;
+		}
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		checkNotes("SimpleSynthesizer.noteOn/noteOff", Benchmarks.stubSynthesizer(), false);
+		checkNotes("SimpleSynthesizer.noteOn/noteOff in batches", Benchmarks.stubBatchedSynthesizer(), true);
+		checkPlayback();
+		if(failed)
+			System.exit(1);
+	}
+
+	/**
+	 * Sends notes through a synthesizer on this thread and reports how
+	 * much was allocated.
+	 *
+	 * @param name - of the path, for the report
+	 * @param synthesizer - to send the notes to
+	 * @param batched - true to send the notes in batches
+	 */
+	private static void checkNotes(String name, SimpleSynthesizer synthesizer, boolean batched) {
+		long thread = Thread.currentThread().getId();
+		// Run the notes through the JIT compiler before measuring.
+		sendNotes(synthesizer, WARMUP_NOTES, batched);
+		long before = threads.getThreadAllocatedBytes(thread);
+		sendNotes(synthesizer, MEASURED_NOTES, batched);
+		long allocated = threads.getThreadAllocatedBytes(thread) - before;
+		report(name, allocated, MEASURED_NOTES, "note");
+	}
+
+	/**
+	 * Turns notes on and off, moving through every channel and pitch.
+	 *
+	 * @param synthesizer - to send the notes to
+	 * @param count - number of notes
+	 * @param batched - true to flush a batch every few notes
+	 */
+	private static void sendNotes(SimpleSynthesizer synthesizer, int count, boolean batched) {
+		for(int i = 0; i < count; i++) {
+			if(batched && i % BATCH_NOTES == 0)
+				synthesizer.beginBatch();
+			synthesizer.noteOn(i & 15, i & 127);
+			synthesizer.noteOff(i & 15, i & 127);
+			if(batched && i % BATCH_NOTES == BATCH_NOTES - 1)
+				synthesizer.flushBatch();
+		}
+		synthesizer.flushBatch();
+	}
+
+	/**
+	 * Plays a looping song of overlapping, looping patterns, with a nested
+	 * track, notes in note tables and a note event, and reports how much the
+	 * transport thread allocated while it played.
+	 *
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	private static void checkPlayback() throws InterruptedException {
+		SimpleSynthesizer synthesizer = Benchmarks.stubBatchedSynthesizer();
+		SimpleSequencer inner = new SimpleSequencer(8, synthesizer);
+		for(int tic = 0; tic < 8; tic += 2)
+			inner.addNote(tic, 1, 72 + tic, 1);
+		SimpleSequencer track = new SimpleSequencer(32, synthesizer);
+		for(int tic = 0; tic < 32; tic++)
+			track.addNote(tic, 3, 60 + tic % 12, 0);
+		track.add(new NoteEvent(5, "Note", 2, 4, 48, synthesizer));
+		track.add(new TrackEvent(16, "Track", 1, 16, inner));
+		track.setLoop(true);
+
+		Pattern pattern = new Pattern(track);
+		SimpleSequencer song = new SimpleSequencer(256, synthesizer);
+		for(int tic = 0; tic < 256; tic += 64)
+			song.add(new PatternInstance(tic, "Track", 0, 96, pattern));
+		song.setLoop(true);
+		song.setSpeedFactor(20); // 20 tics per millisecond
+
+		song.start();
+		Thread.sleep(WARMUP_PLAYBACK_MILLIS);
+		long thread = findThread("Transport playback");
+		long played = song.getLatenessSampleCount();
+		long before = threads.getThreadAllocatedBytes(thread);
+		Thread.sleep(MEASURED_PLAYBACK_MILLIS);
+		long allocated = threads.getThreadAllocatedBytes(thread) - before;
+		played = song.getLatenessSampleCount() - played;
+		song.stop();
+		report("SimpleSequencer playback of looping patterns", allocated, played, "event");
+	}
+
+	/**
+	 * Finds a running thread by name.
+	 *
+	 * @param name - of the thread
+	 * @return its id
+	 * @throws IllegalStateException if no thread has the name
+	 */
+	private static long findThread(String name) {
+		for(Thread thread : Thread.getAllStackTraces().keySet())
+			if(thread.getName().equals(name))
+				return thread.getId();
+		throw new IllegalStateException("No thread named " + name);
+	}
+
+	/**
+	 * Prints how much a path allocated, and records a failure if it
+	 * allocated or measured nothing.
+	 *
+	 * @param name - of the path
+	 * @param allocated - bytes allocated while measuring
+	 * @param count - number of notes or events measured
+	 * @param unit - what was counted
+	 */
+	private static void report(String name, long allocated, long count, String unit) {
+		System.out.printf("%s: %d bytes for %d %ss (%.4f bytes/%s)%n",
+				name, allocated, count, unit, allocated / (double)Math.max(1, count), unit);
+		if(count == 0) {
+			System.out.println(name + " played nothing.");
+			failed = true;
+		} else if(allocated > SLACK_BYTES) {
+			System.out.println(name + " allocates.");
+			failed = true;
+		}
+	}
+}
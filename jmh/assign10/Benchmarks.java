@@ -0,0 +1,423 @@
+package assign10;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.sound.midi.MidiChannel;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the hot paths of the program so that changes can be checked for
+ * slowdowns: inserting, removing, and sorting in a BetterDynamicArray, adding
+ * to and starting a SimpleSequencer, sending notes through a
+ * SimpleSynthesizer, and painting a GridCanvas into an offscreen image.
+ *
+ * Every benchmark that depends on the number of events runs at each event
+ * count from 100 to 1,000,000. Work that has to be redone before each run,
+ * such as refilling an array, is done in an untimed setup. Results are in
+ * nanoseconds per operation.
+ * <pre>
+ * gradle jmh
+ * gradle jmh -Pjmh="sequencerAdd -p eventCount=1000000"
+ * </pre>
+ *
+ * @author River Whitten
+ * @version 11.22.24
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class Benchmarks {
+
+	// Number of single edits timed in each run of the edit benchmarks
+	private static final int EDITS = 100;
+
+	/**
+	 * Notes in time order, and a dynamic array refilled with them before each run.
+	 */
+	@State(Scope.Thread)
+	public static class SortedArray {
+		@Param({"100", "1000", "10000", "100000", "1000000"})
+		public int eventCount;
+
+		AudioEvent[] notes;
+		BetterDynamicArray<AudioEvent> array;
+
+		@Setup(Level.Trial)
+		public void makeNotes() {
+			// Extra notes so that removing leaves eventCount behind
+			notes = notes(eventCount + EDITS, false);
+		}
+
+		@Setup(Level.Invocation)
+		public void fill() {
+			array = toArray(notes);
+		}
+	}
+
+	/**
+	 * Notes in random order, and a dynamic array refilled with them before each run.
+	 */
+	@State(Scope.Thread)
+	public static class ShuffledArray {
+		@Param({"100", "1000", "10000", "100000", "1000000"})
+		public int eventCount;
+
+		AudioEvent[] notes;
+		BetterDynamicArray<AudioEvent> array;
+
+		@Setup(Level.Trial)
+		public void makeNotes() {
+			notes = notes(eventCount, true);
+		}
+
+		@Setup(Level.Invocation)
+		public void fill() {
+			array = toArray(notes);
+		}
+	}
+
+	/**
+	 * A sequencer refilled with the given number of events before each run.
+	 */
+	@State(Scope.Thread)
+	public static class FilledSequencer {
+		@Param({"100", "1000", "10000", "100000", "1000000"})
+		public int eventCount;
+
+		SimpleSynthesizer synthesizer;
+		AudioEvent[] notes;
+		SimpleSequencer sequencer;
+		Random random;
+
+		@Setup(Level.Trial)
+		public void makeNotes() {
+			synthesizer = stubSynthesizer();
+			notes = notes(eventCount, false);
+			random = new Random(1);
+		}
+
+		@Setup(Level.Invocation)
+		public void fill() {
+			// The sequencer sorts the array it is given, so each run gets a copy.
+			sequencer = new SimpleSequencer(eventCount);
+			sequencer.updateSequence(toArray(notes));
+		}
+	}
+
+	/**
+	 * A stopped sequencer holding the given number of events.
+	 */
+	@State(Scope.Thread)
+	public static class StoppedSequencer {
+		@Param({"100", "1000", "10000", "100000", "1000000"})
+		public int eventCount;
+
+		SimpleSequencer sequencer;
+
+		@Setup(Level.Trial)
+		public void makeSequencer() {
+			SimpleSynthesizer synthesizer = stubSynthesizer();
+			BetterDynamicArray<AudioEvent> events = new BetterDynamicArray<AudioEvent>();
+			for(int i = 0; i < eventCount; i++)
+				events.add(new NoteEvent(i, "Note", 0, 1, 60, synthesizer));
+			sequencer = new SimpleSequencer(eventCount);
+			sequencer.updateSequence(events);
+			// One tic per second, so few events play while measuring
+			sequencer.setSpeedFactor(0.001);
+		}
+
+		@Setup(Level.Invocation)
+		public void stop() {
+			sequencer.stop();
+		}
+
+		@TearDown(Level.Trial)
+		public void stopPlaying() {
+			sequencer.stop();
+		}
+	}
+
+	/**
+	 * A synthesizer whose channels do nothing, and the next note to send it.
+	 * Each note costs the same however many have been sent, so this has no
+	 * event count.
+	 */
+	@State(Scope.Thread)
+	public static class StubSynthesizer {
+		SimpleSynthesizer synthesizer;
+		int note;
+
+		@Setup(Level.Trial)
+		public void makeSynthesizer() {
+			synthesizer = stubSynthesizer();
+		}
+	}
+
+	/**
+	 * A grid holding the given number of cells and an image to paint it into.
+	 */
+	@State(Scope.Thread)
+	public static class FilledGrid {
+		@Param({"100", "1000", "10000", "100000", "1000000"})
+		public int eventCount;
+
+		BenchmarkGrid grid;
+		BufferedImage image;
+
+		@Setup(Level.Trial)
+		public void makeGrid() {
+			grid = new BenchmarkGrid();
+			Random random = new Random(1);
+			for(int i = 0; i < eventCount; i++)
+				grid.addCell(random.nextInt(128), random.nextInt(512), 1, 1 + random.nextInt(4));
+			image = new BufferedImage(grid.getWidth(), grid.getHeight(), BufferedImage.TYPE_INT_RGB);
+		}
+
+		@Setup(Level.Invocation)
+		public void invalidate() {
+			grid.setColumns(512); // Makes the cached background out of date
+		}
+	}
+
+	/**
+	 * Inserts into the middle of an array of the given size.
+	 *
+	 * @param state - the array
+	 * @return the array, so the JIT compiler can't skip the work
+	 */
+	@Benchmark
+	@OperationsPerInvocation(EDITS)
+	public Object arrayInsert(SortedArray state) {
+		BetterDynamicArray<AudioEvent> array = state.array;
+		AudioEvent event = array.get(0);
+		for(int i = 0; i < EDITS; i++)
+			array.insert(array.size() / 2, event);
+		return array;
+	}
+
+	/**
+	 * Removes from the middle of an array of the given size.
+	 *
+	 * @param state - the array
+	 * @return the array, so the JIT compiler can't skip the work
+	 */
+	@Benchmark
+	@OperationsPerInvocation(EDITS)
+	public Object arrayRemove(SortedArray state) {
+		BetterDynamicArray<AudioEvent> array = state.array;
+		for(int i = 0; i < EDITS; i++)
+			array.remove(array.size() / 2);
+		return array;
+	}
+
+	/**
+	 * Sorts an array of events in random order. One operation is sorting
+	 * the whole array.
+	 *
+	 * @param state - the array
+	 * @return the array, so the JIT compiler can't skip the work
+	 */
+	@Benchmark
+	public Object arraySort(ShuffledArray state) {
+		state.array.sort();
+		return state.array;
+	}
+
+	/**
+	 * Adds notes at random times to a sequencer that already holds the given
+	 * number of events.
+	 *
+	 * @param state - the sequencer
+	 * @return the sequencer, so the JIT compiler can't skip the work
+	 */
+	@Benchmark
+	@OperationsPerInvocation(EDITS)
+	public Object sequencerAdd(FilledSequencer state) {
+		for(int i = 0; i < EDITS; i++)
+			state.sequencer.add(new NoteEvent(state.random.nextInt(state.eventCount), "Note", 0, 1, 60,
+					state.synthesizer));
+		return state.sequencer;
+	}
+
+	/**
+	 * Starts a sequencer holding the given number of events. Only the call
+	 * to start is timed, not the playback it sets off.
+	 *
+	 * @param state - the sequencer
+	 */
+	@Benchmark
+	public void sequencerStart(StoppedSequencer state) {
+		state.sequencer.start();
+	}
+
+	/**
+	 * Sends a note through a synthesizer whose channels do nothing, moving
+	 * through every channel and pitch.
+	 *
+	 * @param state - the synthesizer
+	 */
+	@Benchmark
+	public void synthesizerNoteOn(StubSynthesizer state) {
+		int note = state.note++;
+		state.synthesizer.noteOn(note & 15, note & 127);
+	}
+
+	/**
+	 * Paints a grid holding the given number of cells into an offscreen
+	 * image, rebuilding its cached background each time. One operation is
+	 * painting the whole grid.
+	 *
+	 * @param state - the grid
+	 * @return the image, so the JIT compiler can't skip the work
+	 */
+	@Benchmark
+	public Object gridPaint(FilledGrid state) {
+		Graphics g = state.image.getGraphics();
+		state.grid.paintComponent(g);
+		g.dispose();
+		return state.image;
+	}
+
+	/**
+	 * Makes notes with times 0 to eventCount - 1.
+	 *
+	 * @param eventCount - number of notes
+	 * @param shuffled - true for random order, false for sorted
+	 * @return the notes
+	 */
+	static AudioEvent[] notes(int eventCount, boolean shuffled) {
+		AudioEvent[] notes = new AudioEvent[eventCount];
+		for(int i = 0; i < eventCount; i++)
+			notes[i] = new NoteEvent(i, "Note", 0, 1, 60, null);
+		if(shuffled) {
+			Random random = new Random(1);
+			for(int i = eventCount - 1; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				AudioEvent temp = notes[i];
+				notes[i] = notes[j];
+				notes[j] = temp;
+			}
+		}
+		return notes;
+	}
+
+	/**
+	 * Copies notes into a new dynamic array.
+	 *
+	 * @param notes - to copy
+	 * @return the array
+	 */
+	static BetterDynamicArray<AudioEvent> toArray(AudioEvent[] notes) {
+		BetterDynamicArray<AudioEvent> array = new BetterDynamicArray<AudioEvent>();
+		for(AudioEvent note : notes)
+			array.add(note);
+		return array;
+	}
+
+	/**
+	 * Makes a synthesizer with 16 channels that do nothing.
+	 *
+	 * @return the synthesizer
+	 */
+	static SimpleSynthesizer stubSynthesizer() {
+		MidiChannel[] channels = new MidiChannel[16];
+		for(int i = 0; i < channels.length; i++)
+			channels[i] = new StubChannel();
+		return new SimpleSynthesizer(channels);
+	}
+
+	/**
+	 * Makes a synthesizer in batched mode that sends its notes to a
+	 * receiver that does nothing.
+	 *
+	 * @return the synthesizer
+	 */
+	static SimpleSynthesizer stubBatchedSynthesizer() {
+		MidiChannel[] channels = new MidiChannel[16];
+		for(int i = 0; i < channels.length; i++)
+			channels[i] = new StubChannel();
+		return new SimpleSynthesizer(channels, new StubReceiver());
+	}
+
+	/**
+	 * A grid of 128 rows and 512 columns that does nothing with cells.
+	 */
+	static class BenchmarkGrid extends GridCanvas {
+		public BenchmarkGrid() {
+			super(1024, 512, 128, 512, 4, 4);
+			setSize(1024, 512);
+		}
+
+		public void onCellPressed(int row, int col, int rowSpan, int colSpan) {}
+		public void onCellDragged(int row, int col, int rowSpan, int colSpan) {}
+		public void onCellReleased(int row, int col, int rowSpan, int colSpan) {}
+		public void onCellRemoved(int row, int col) {}
+
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * A midi receiver that only counts the messages it is sent.
+	 */
+	static class StubReceiver implements Receiver {
+		private long messages;
+
+		public void send(MidiMessage message, long timeStamp) { messages++; }
+		public void close() {}
+	}
+
+	/**
+	 * A midi channel that only counts the notes it is sent.
+	 */
+	static class StubChannel implements MidiChannel {
+		private long notes;
+
+		public void noteOn(int noteNumber, int velocity) { notes++; }
+		public void noteOff(int noteNumber, int velocity) { notes++; }
+		public void noteOff(int noteNumber) { notes++; }
+		public void setPolyPressure(int noteNumber, int pressure) {}
+		public int getPolyPressure(int noteNumber) { return 0; }
+		public void setChannelPressure(int pressure) {}
+		public int getChannelPressure() { return 0; }
+		public void controlChange(int controller, int value) {}
+		public int getController(int controller) { return 0; }
+		public void programChange(int program) {}
+		public void programChange(int bank, int program) {}
+		public int getProgram() { return 0; }
+		public void setPitchBend(int bend) {}
+		public int getPitchBend() { return 8192; }
+		public void resetAllControllers() {}
+		public void allNotesOff() {}
+		public void allSoundOff() {}
+		public boolean localControl(boolean on) { return false; }
+		public void setMono(boolean on) {}
+		public boolean getMono() { return false; }
+		public void setOmni(boolean on) {}
+		public boolean getOmni() { return false; }
+		public void setMute(boolean mute) {}
+		public boolean getMute() { return false; }
+		public void setSolo(boolean soloState) {}
+		public boolean getSolo() { return false; }
+	}
+}
@@ -0,0 +1,745 @@
+package assign10;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.function.LongConsumer;
+
+/**
+ * Checks the chunked stores against plain sorted lists. Each store is given
+ * the same random edits as an ArrayList kept sorted the simple way, and the
+ * two are compared as they go. The lists grow to several blocks and shrink
+ * back to nothing over and over, so inserts split blocks and removes join
+ * them, and batches are merged both ways ChunkedArray.mergeSorted can merge
+ * them. Snapshots are taken along the way and checked again after later
+ * edits, to make sure the edits never reach them.
+ *
+ * Every run uses the same seeds, so a failure can be repeated. Exits with
+ * status 1 if any store disagrees with its list. The build runs this as
+ * part of its checks.
+ * <pre>
+ * gradle storeCheck
+ * </pre>
+ *
+ * @author River Whitten
+ * @version 11.22.24
+ */
+public class StoreCheck {
+
+	private static final int SEEDS = 5;
+	private static final int OPERATIONS = 30_000;
+	// Lists grow to this size before they shrink, about four blocks
+	private static final int MAX_SIZE = 4096;
+	// Operations between full comparisons; each operation is checked on its own too
+	private static final int COMPARE_EVERY = 64;
+	// Longest range read after each edit, enough to span a few blocks
+	private static final int MAX_RANGE = 2048;
+	// Most snapshots kept to check at once
+	private static final int SNAPSHOTS = 4;
+	private static final int MAX_TIME = 2000; // small enough that many values are equal
+	private static final int TEMPO_OPERATIONS = 2000;
+	private static final int MAX_TEMPO_TIC = 5000;
+
+	private static boolean failed;
+
+	/**
+	 * Checks each store with each seed and reports the result.
+	 *
+	 * @param args - not used
+	 */
+	public static void main(String[] args) {
+		for(int seed = 0; seed < SEEDS; seed++) {
+			run("ChunkedArray", seed, StoreCheck::checkChunkedArray);
+			run("IntChunkedArray", seed, StoreCheck::checkIntChunkedArray);
+			run("EventStore", seed, StoreCheck::checkEventStore);
+			run("NoteStore", seed, StoreCheck::checkNoteStore);
+			run("TempoMap", seed, StoreCheck::checkTempoMap);
+		}
+		if(failed)
+			System.exit(1);
+		System.out.println("ChunkedArray, IntChunkedArray, EventStore, NoteStore, and TempoMap match sorted lists for "
+				+ SEEDS + " seeds.");
+	}
+
+	/**
+	 * Runs one check, reporting a failure instead of stopping the others.
+	 *
+	 * @param name - of the store
+	 * @param seed - for the random edits
+	 * @param check - to run
+	 */
+	private static void run(String name, int seed, LongConsumer check) {
+		try {
+			check.accept(seed);
+		} catch (RuntimeException e) {
+			System.out.println(name + " failed with seed " + seed + ": " + e);
+			failed = true;
+		}
+	}
+
+	/**
+	 * Throws an exception if a condition does not hold.
+	 *
+	 * @param condition - that should hold
+	 * @param message - describing what went wrong
+	 * @throws IllegalStateException if the condition is false
+	 */
+	private static void expect(boolean condition, String message) {
+		if(!condition)
+			fail(message);
+	}
+
+	/**
+	 * Throws an exception describing a mismatch. Checks made for every
+	 * element call this directly, so the message is only built on failure.
+	 *
+	 * @param message - describing what went wrong
+	 * @throws IllegalStateException always
+	 */
+	private static void fail(String message) {
+		throw new IllegalStateException(message);
+	}
+
+	/**
+	 * Decides whether the next edit should add rather than remove. Lists
+	 * mostly grow until they reach MAX_SIZE, then mostly shrink until they
+	 * are empty.
+	 *
+	 * @param size - of the list
+	 * @param growing - whether the list was growing before this edit
+	 * @return whether the list is growing now
+	 */
+	private static boolean grow(int size, boolean growing) {
+		if(size >= MAX_SIZE)
+			return false;
+		if(size == 0)
+			return true;
+		return growing;
+	}
+
+	/**
+	 * Gets the number of elements to merge in one batch. Half the batches
+	 * are a single element, which ChunkedArray.mergeSorted inserts one at a
+	 * time once the list is a few blocks long, and half hold at least one
+	 * element for every block's worth of the list, which it always merges
+	 * in one pass. While the list shrinks, every batch is a single element,
+	 * so that removes can keep up.
+	 *
+	 * @param random - to choose with
+	 * @param size - of the list
+	 * @param growing - whether the list is growing
+	 * @return number of elements in the batch
+	 */
+	private static int batchSize(Random random, int size, boolean growing) {
+		if(!growing || random.nextBoolean())
+			return 1;
+		return size / 1024 + 1 + random.nextInt(64);
+	}
+
+	/**
+	 * Finds where a sorted list would insert a value, after any equal values.
+	 *
+	 * @param list - sorted values
+	 * @param value - to insert
+	 * @return index after the last value not greater than the given one
+	 */
+	private static <T extends Comparable<? super T>> int upperBound(ArrayList<T> list, T value) {
+		int low = 0;
+		int high = list.size();
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(list.get(mid).compareTo(value) <= 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * An element that compares by key alone, so equal elements can still be
+	 * told apart and their order checked.
+	 */
+	private static class Item implements Comparable<Item> {
+		private final int key;
+
+		/**
+		 * Creates an element.
+		 *
+		 * @param key - to compare by
+		 */
+		private Item(int key) {
+			this.key = key;
+		}
+
+		@Override
+		public int compareTo(Item other) {
+			return Integer.compare(key, other.key);
+		}
+
+		@Override
+		public String toString() {
+			return "Item[" + key + "]";
+		}
+	}
+
+	/**
+	 * Checks ChunkedArray's sorted inserts, positional inserts, appends,
+	 * removes, batch merges, and ranges, and that a snapshot and the array
+	 * it was taken of can each be changed without changing the other.
+	 *
+	 * @param seed - for the random edits
+	 */
+	private static void checkChunkedArray(long seed) {
+		Random random = new Random(seed);
+		ChunkedArray<Item> array = new ChunkedArray<>();
+		ArrayList<Item> model = new ArrayList<>();
+		ArrayList<ChunkedArray<Item>> snapshots = new ArrayList<>();
+		ArrayList<ArrayList<Item>> snapshotModels = new ArrayList<>();
+		boolean growing = true;
+
+		for(int op = 0; op < OPERATIONS; op++) {
+			growing = grow(model.size(), growing);
+			int choice = random.nextInt(100);
+			if(choice < 2) {
+				if(snapshots.size() == SNAPSHOTS) {
+					snapshots.remove(0);
+					snapshotModels.remove(0);
+				}
+				snapshots.add(array.snapshot());
+				snapshotModels.add(new ArrayList<>(model));
+			} else if(choice < 4 && !snapshots.isEmpty()) {
+				// Change a snapshot, which must not change the array.
+				int which = random.nextInt(snapshots.size());
+				Item item = new Item(random.nextInt(MAX_TIME));
+				int index = snapshots.get(which).insertSorted(item);
+				snapshotModels.get(which).add(index, item);
+			} else if(growing ? choice < 94 : choice < 10) {
+				int kind = random.nextInt(4);
+				if(kind == 0) {
+					Item item = new Item(random.nextInt(MAX_TIME));
+					int index = array.insertSorted(item);
+					int expected = upperBound(model, item);
+					expect(index == expected, "insertSorted gave index " + index + ", expected " + expected);
+					model.add(index, item);
+				} else if(kind == 1) {
+					// Insert by position with a key that keeps the list sorted.
+					int index = random.nextInt(model.size() + 1);
+					Item item = new Item(index > 0 ? model.get(index - 1).key : 0);
+					array.insert(index, item);
+					model.add(index, item);
+				} else if(kind == 2) {
+					Item item = new Item(model.isEmpty() ? 0 : model.get(model.size() - 1).key + random.nextInt(3));
+					array.add(item);
+					model.add(item);
+				} else {
+					BetterDynamicArray<Item> batch = new BetterDynamicArray<>();
+					int count = batchSize(random, model.size(), growing);
+					for(int i = 0; i < count; i++)
+						batch.add(new Item(random.nextInt(MAX_TIME)));
+					batch.sort();
+					array.mergeSorted(batch);
+					for(int i = 0; i < batch.size(); i++)
+						model.add(upperBound(model, batch.get(i)), batch.get(i));
+				}
+			} else if(!model.isEmpty()) {
+				int index = random.nextInt(model.size());
+				array.remove(index);
+				model.remove(index);
+			}
+
+			expect(array.size() == model.size(), "size is " + array.size() + ", expected " + model.size());
+			if(!model.isEmpty()) {
+				int index = random.nextInt(model.size());
+				expect(array.get(index) == model.get(index), "wrong element at " + index);
+				int from = random.nextInt(model.size() + 1);
+				int to = from + random.nextInt(Math.min(MAX_RANGE, model.size() - from) + 1);
+				BetterDynamicArray<Item> range = array.getRange(from, to);
+				expect(range.size() == to - from, "getRange(" + from + ", " + to + ") has " + range.size() + " elements");
+				for(int i = 0; i < range.size(); i++)
+					if(range.get(i) != model.get(from + i))
+						fail("getRange(" + from + ", " + to + ") is wrong at " + i);
+			}
+			if(op % COMPARE_EVERY == 0) {
+				compareItems(array, model, "array");
+				for(int i = 0; i < snapshots.size(); i++)
+					compareItems(snapshots.get(i), snapshotModels.get(i), "snapshot");
+			}
+		}
+		compareItems(array, model, "array");
+		for(int i = 0; i < snapshots.size(); i++)
+			compareItems(snapshots.get(i), snapshotModels.get(i), "snapshot");
+		array.clear();
+		expect(array.size() == 0, "clear left " + array.size() + " elements");
+		for(int i = 0; i < snapshots.size(); i++)
+			compareItems(snapshots.get(i), snapshotModels.get(i), "snapshot after clear");
+	}
+
+	/**
+	 * Compares every element of a ChunkedArray with a list.
+	 *
+	 * @param array - to check
+	 * @param model - the elements it should hold
+	 * @param what - is being compared, for the message
+	 */
+	private static void compareItems(ChunkedArray<Item> array, ArrayList<Item> model, String what) {
+		expect(array.size() == model.size(), what + " size is " + array.size() + ", expected " + model.size());
+		for(int i = 0; i < model.size(); i++)
+			if(array.get(i) != model.get(i))
+				fail(what + " has the wrong element at " + i);
+	}
+
+	/**
+	 * Checks IntChunkedArray's sorted inserts, positional inserts, appends,
+	 * and removes, and that a snapshot and the array it was taken of can
+	 * each be changed without changing the other.
+	 *
+	 * @param seed - for the random edits
+	 */
+	private static void checkIntChunkedArray(long seed) {
+		Random random = new Random(seed);
+		IntChunkedArray array = new IntChunkedArray();
+		ArrayList<Integer> model = new ArrayList<>();
+		ArrayList<IntChunkedArray> snapshots = new ArrayList<>();
+		ArrayList<ArrayList<Integer>> snapshotModels = new ArrayList<>();
+		boolean growing = true;
+
+		for(int op = 0; op < OPERATIONS; op++) {
+			growing = grow(model.size(), growing);
+			int choice = random.nextInt(100);
+			if(choice < 2) {
+				if(snapshots.size() == SNAPSHOTS) {
+					snapshots.remove(0);
+					snapshotModels.remove(0);
+				}
+				snapshots.add(array.snapshot());
+				snapshotModels.add(new ArrayList<>(model));
+			} else if(choice < 4 && !snapshots.isEmpty()) {
+				int which = random.nextInt(snapshots.size());
+				int value = random.nextInt(MAX_TIME);
+				int index = snapshots.get(which).insertSorted(value);
+				snapshotModels.get(which).add(index, value);
+			} else if(growing ? choice < 94 : choice < 10) {
+				int kind = random.nextInt(3);
+				if(kind == 0) {
+					int value = random.nextInt(MAX_TIME);
+					int index = array.insertSorted(value);
+					int expected = upperBound(model, value);
+					expect(index == expected, "insertSorted gave index " + index + ", expected " + expected);
+					model.add(index, value);
+				} else if(kind == 1) {
+					int index = random.nextInt(model.size() + 1);
+					int value = index > 0 ? model.get(index - 1) : 0;
+					array.insert(index, value);
+					model.add(index, value);
+				} else {
+					int value = model.isEmpty() ? 0 : model.get(model.size() - 1) + random.nextInt(3);
+					array.add(value);
+					model.add(value);
+				}
+			} else if(!model.isEmpty()) {
+				int index = random.nextInt(model.size());
+				array.remove(index);
+				model.remove(index);
+			}
+
+			expect(array.size() == model.size(), "size is " + array.size() + ", expected " + model.size());
+			if(!model.isEmpty()) {
+				int index = random.nextInt(model.size());
+				expect(array.get(index) == model.get(index), "wrong value at " + index);
+			}
+			if(op % COMPARE_EVERY == 0) {
+				compareInts(array, model, "array");
+				for(int i = 0; i < snapshots.size(); i++)
+					compareInts(snapshots.get(i), snapshotModels.get(i), "snapshot");
+			}
+		}
+		compareInts(array, model, "array");
+		for(int i = 0; i < snapshots.size(); i++)
+			compareInts(snapshots.get(i), snapshotModels.get(i), "snapshot");
+		array.clear();
+		expect(array.size() == 0, "clear left " + array.size() + " values");
+		for(int i = 0; i < snapshots.size(); i++)
+			compareInts(snapshots.get(i), snapshotModels.get(i), "snapshot after clear");
+	}
+
+	/**
+	 * Compares every value of an IntChunkedArray with a list.
+	 *
+	 * @param array - to check
+	 * @param model - the values it should hold
+	 * @param what - is being compared, for the message
+	 */
+	private static void compareInts(IntChunkedArray array, ArrayList<Integer> model, String what) {
+		expect(array.size() == model.size(), what + " size is " + array.size() + ", expected " + model.size());
+		for(int i = 0; i < model.size(); i++)
+			if(array.get(i) != model.get(i))
+				fail(what + " has the wrong value at " + i);
+	}
+
+	/**
+	 * Checks EventStore's adds, batch adds, removes, and lookups, including
+	 * its index of each channel, and that its snapshots can't be changed and
+	 * don't see later edits.
+	 *
+	 * @param seed - for the random edits
+	 */
+	private static void checkEventStore(long seed) {
+		Random random = new Random(seed);
+		EventStore store = new EventStore();
+		ArrayList<AudioEvent> model = new ArrayList<>();
+		ArrayList<EventStore> snapshots = new ArrayList<>();
+		ArrayList<ArrayList<AudioEvent>> snapshotModels = new ArrayList<>();
+		boolean growing = true;
+
+		for(int op = 0; op < OPERATIONS; op++) {
+			growing = grow(model.size(), growing);
+			int choice = random.nextInt(100);
+			if(choice < 2) {
+				if(snapshots.size() == SNAPSHOTS) {
+					snapshots.remove(0);
+					snapshotModels.remove(0);
+				}
+				EventStore snapshot = store.snapshot();
+				snapshots.add(snapshot);
+				snapshotModels.add(new ArrayList<>(model));
+				try {
+					snapshot.add(randomNote(random));
+					fail("a snapshot was changed");
+				} catch (UnsupportedOperationException e) {
+					// Snapshots are read-only.
+				}
+			} else if(growing ? choice < 94 : choice < 10) {
+				if(random.nextBoolean()) {
+					NoteEvent note = randomNote(random);
+					store.add(note);
+					model.add(upperBound(model, note), note);
+				} else {
+					BetterDynamicArray<AudioEvent> batch = new BetterDynamicArray<>();
+					int count = batchSize(random, model.size(), growing);
+					for(int i = 0; i < count; i++)
+						batch.add(randomNote(random));
+					batch.sort();
+					store.addAll(batch);
+					for(int i = 0; i < batch.size(); i++)
+						model.add(upperBound(model, batch.get(i)), batch.get(i));
+				}
+			} else if(!model.isEmpty()) {
+				AudioEvent event = model.get(random.nextInt(model.size()));
+				expect(store.contains(event), "an added event is missing");
+				expect(store.remove(event), "remove did not find an added event");
+				model.remove(event);
+				expect(!store.contains(event), "a removed event is still there");
+				expect(!store.remove(event), "remove found an event twice");
+			}
+
+			expect(store.size() == model.size(), "size is " + store.size() + ", expected " + model.size());
+			int time = random.nextInt(MAX_TIME / 4 + 1);
+			int end = time + random.nextInt(MAX_RANGE / 64);
+			int channel = random.nextInt(5);
+			int pitch = random.nextInt(8);
+			expect(store.indexAtTime(time) == firstAtTime(model, time), "wrong indexAtTime(" + time + ")");
+			compareRange(store.getRange(time, end), model, -1, time, end);
+			compareRange(store.getRange(channel, time, end), model, channel, time, end);
+			expect(store.findNote(time, pitch) == findNote(model, time, pitch), "wrong findNote(" + time + ", " + pitch + ")");
+			if(op % COMPARE_EVERY == 0) {
+				compareEvents(store, model, "store");
+				for(int i = 0; i < snapshots.size(); i++)
+					compareEvents(snapshots.get(i), snapshotModels.get(i), "snapshot");
+			}
+		}
+		compareEvents(store, model, "store");
+		store.clear();
+		expect(store.size() == 0, "clear left " + store.size() + " events");
+		for(int i = 0; i < snapshots.size(); i++)
+			compareEvents(snapshots.get(i), snapshotModels.get(i), "snapshot after clear");
+	}
+
+	/**
+	 * Makes a note on one of four channels, with few enough times and
+	 * pitches that many notes share them.
+	 *
+	 * @param random - to choose the values with
+	 * @return the note
+	 */
+	private static NoteEvent randomNote(Random random) {
+		return new NoteEvent(random.nextInt(MAX_TIME / 4), "Note", random.nextInt(4), 1, random.nextInt(8), null);
+	}
+
+	/**
+	 * Finds the first event at or after a time in a sorted list.
+	 *
+	 * @param model - sorted events
+	 * @param time - in tics
+	 * @return index of the event
+	 */
+	private static int firstAtTime(ArrayList<AudioEvent> model, int time) {
+		int low = 0;
+		int high = model.size();
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(model.get(mid).getTime() < time)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Finds the first note at a time with a pitch in a sorted list.
+	 *
+	 * @param model - sorted events
+	 * @param time - of the note
+	 * @param pitch - of the note
+	 * @return the note, or null if there is none
+	 */
+	private static NoteEvent findNote(ArrayList<AudioEvent> model, int time, int pitch) {
+		for(int i = firstAtTime(model, time); i < model.size() && model.get(i).getTime() == time; i++)
+			if(((NoteEvent)model.get(i)).getPitch() == pitch)
+				return (NoteEvent)model.get(i);
+		return null;
+	}
+
+	/**
+	 * Compares the events of a range with the matching events of a list.
+	 *
+	 * @param range - events from the store
+	 * @param model - sorted events
+	 * @param channel - of the events, or -1 for every channel
+	 * @param start - earliest time in the range
+	 * @param end - first time after the range
+	 */
+	private static void compareRange(BetterDynamicArray<AudioEvent> range, ArrayList<AudioEvent> model,
+			int channel, int start, int end) {
+		int found = 0;
+		for(int i = firstAtTime(model, start); i < model.size() && model.get(i).getTime() < end; i++) {
+			AudioEvent event = model.get(i);
+			if(channel >= 0 && event.getChannel() != channel)
+				continue;
+			if(found >= range.size() || range.get(found) != event)
+				fail("getRange(" + channel + ", " + start + ", " + end + ") is wrong at " + found);
+			found++;
+		}
+		expect(found == range.size(), "getRange(" + channel + ", " + start + ", " + end + ") has extra events");
+	}
+
+	/**
+	 * Compares every event of an EventStore with a list.
+	 *
+	 * @param store - to check
+	 * @param model - the events it should hold
+	 * @param what - is being compared, for the message
+	 */
+	private static void compareEvents(EventStore store, ArrayList<AudioEvent> model, String what) {
+		expect(store.size() == model.size(), what + " size is " + store.size() + ", expected " + model.size());
+		for(int i = 0; i < model.size(); i++)
+			if(store.get(i) != model.get(i))
+				fail(what + " has the wrong event at " + i);
+		for(int channel = 0; channel < 4; channel++)
+			compareRange(store.getRange(channel, 0, MAX_TIME), model, channel, 0, MAX_TIME);
+	}
+
+	/**
+	 * Checks NoteStore's adds, removes, and lookups, and that its snapshots
+	 * can't be changed and don't see later edits.
+	 *
+	 * @param seed - for the random edits
+	 */
+	private static void checkNoteStore(long seed) {
+		Random random = new Random(seed);
+		NoteStore store = new NoteStore(null);
+		ArrayList<int[]> model = new ArrayList<>(); // time, duration, pitch, and channel of each note
+		ArrayList<NoteStore> snapshots = new ArrayList<>();
+		ArrayList<ArrayList<int[]>> snapshotModels = new ArrayList<>();
+		boolean growing = true;
+
+		for(int op = 0; op < OPERATIONS; op++) {
+			growing = grow(model.size(), growing);
+			int choice = random.nextInt(100);
+			if(choice < 2) {
+				if(snapshots.size() == SNAPSHOTS) {
+					snapshots.remove(0);
+					snapshotModels.remove(0);
+				}
+				NoteStore snapshot = store.snapshot();
+				expect(snapshot.isReadOnly(), "a snapshot is not read-only");
+				snapshots.add(snapshot);
+				snapshotModels.add(new ArrayList<>(model));
+				try {
+					snapshot.add(0, 1, 0, 0);
+					fail("a snapshot was changed");
+				} catch (UnsupportedOperationException e) {
+					// Snapshots are read-only.
+				}
+			} else if(growing ? choice < 94 : choice < 10) {
+				int[] note = {random.nextInt(MAX_TIME), 1 + random.nextInt(8), random.nextInt(128), random.nextInt(16)};
+				int index = store.add(note[0], note[1], note[2], note[3]);
+				int expected = noteIndex(model, note[0] + 1);
+				expect(index == expected, "add gave index " + index + ", expected " + expected);
+				model.add(index, note);
+			} else if(!model.isEmpty()) {
+				int index = random.nextInt(model.size());
+				store.remove(index);
+				model.remove(index);
+			}
+
+			expect(store.size() == model.size(), "size is " + store.size() + ", expected " + model.size());
+			int time = random.nextInt(MAX_TIME + 1);
+			int expected = noteIndex(model, time);
+			expect(store.indexAtTime(time) == expected, "wrong indexAtTime(" + time + ")");
+			if(expected < model.size()) {
+				int pitch = model.get(expected)[2];
+				expect(store.find(model.get(expected)[0], pitch) == expected, "find missed a note at " + expected);
+			}
+			if(op % COMPARE_EVERY == 0) {
+				compareNotes(store, model, "store");
+				for(int i = 0; i < snapshots.size(); i++)
+					compareNotes(snapshots.get(i), snapshotModels.get(i), "snapshot");
+			}
+		}
+		compareNotes(store, model, "store");
+		store.clear();
+		expect(store.size() == 0, "clear left " + store.size() + " notes");
+		for(int i = 0; i < snapshots.size(); i++)
+			compareNotes(snapshots.get(i), snapshotModels.get(i), "snapshot after clear");
+	}
+
+	/**
+	 * Finds the first note at or after a time in a sorted list.
+	 *
+	 * @param model - time, duration, pitch, and channel of each note, sorted by time
+	 * @param time - in tics
+	 * @return index of the note
+	 */
+	private static int noteIndex(ArrayList<int[]> model, int time) {
+		int low = 0;
+		int high = model.size();
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(model.get(mid)[0] < time)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Compares every note of a NoteStore with a list.
+	 *
+	 * @param store - to check
+	 * @param model - time, duration, pitch, and channel of the notes it should hold
+	 * @param what - is being compared, for the message
+	 */
+	private static void compareNotes(NoteStore store, ArrayList<int[]> model, String what) {
+		expect(store.size() == model.size(), what + " size is " + store.size() + ", expected " + model.size());
+		for(int i = 0; i < model.size(); i++) {
+			int[] note = model.get(i);
+			if(store.getTime(i) != note[0] || store.getDuration(i) != note[1]
+					|| store.getPitch(i) != note[2] || store.getChannel(i) != note[3])
+				fail(what + " has the wrong note at " + i);
+		}
+	}
+
+	/**
+	 * Checks TempoMap's changes and conversions against sorted lists of
+	 * tics and tempos, with times worked out by adding up every segment,
+	 * and that a map is never changed by the maps made from it.
+	 *
+	 * @param seed - for the random changes
+	 */
+	private static void checkTempoMap(long seed) {
+		Random random = new Random(seed);
+		TempoMap map = new TempoMap(1);
+		ArrayList<Integer> tics = new ArrayList<>();
+		ArrayList<Double> speeds = new ArrayList<>();
+		tics.add(0);
+		speeds.add(1.0);
+		ArrayList<TempoMap> earlier = new ArrayList<>();
+		ArrayList<ArrayList<Integer>> earlierTics = new ArrayList<>();
+		ArrayList<ArrayList<Double>> earlierSpeeds = new ArrayList<>();
+
+		for(int op = 0; op < TEMPO_OPERATIONS; op++) {
+			if(random.nextInt(50) == 0) {
+				if(earlier.size() == SNAPSHOTS) {
+					earlier.remove(0);
+					earlierTics.remove(0);
+					earlierSpeeds.remove(0);
+				}
+				earlier.add(map);
+				earlierTics.add(new ArrayList<>(tics));
+				earlierSpeeds.add(new ArrayList<>(speeds));
+			}
+			if(random.nextInt(20) == 0) {
+				double factor = 0.5 + random.nextDouble();
+				map = map.scaled(factor);
+				for(int i = 0; i < speeds.size(); i++)
+					speeds.set(i, speeds.get(i) * factor);
+			} else {
+				// Land on an existing change now and then, which replaces it.
+				int tic = random.nextInt(4) == 0 ? tics.get(random.nextInt(tics.size())) : random.nextInt(MAX_TEMPO_TIC);
+				double speed = 0.01 + random.nextDouble() * 10;
+				map = map.withChange(tic, speed);
+				int index = upperBound(tics, tic);
+				if(index > 0 && tics.get(index - 1) == tic) {
+					speeds.set(index - 1, speed);
+				} else {
+					tics.add(index, tic);
+					speeds.add(index, speed);
+				}
+			}
+			compareTempo(map, tics, speeds, random, "map");
+		}
+		for(int i = 0; i < earlier.size(); i++)
+			compareTempo(earlier.get(i), earlierTics.get(i), earlierSpeeds.get(i), random, "earlier map");
+
+		for(double bad : new double[] {0, -1, Double.NaN}) {
+			try {
+				map.withChange(1, bad);
+				fail("withChange accepted a tempo of " + bad);
+			} catch (IllegalArgumentException e) {
+				// Tempos must be positive.
+			}
+		}
+		try {
+			map.withChange(-1, 1);
+			fail("withChange accepted a negative tic");
+		} catch (IllegalArgumentException e) {
+			// Changes can't come before the timeline.
+		}
+	}
+
+	/**
+	 * Compares a tempo map with lists of its changes, at every change and
+	 * at a few random tics.
+	 *
+	 * @param map - to check
+	 * @param tics - tic of each change, in order
+	 * @param speeds - tics per millisecond from each change
+	 * @param random - to choose the tics to convert
+	 * @param what - is being compared, for the message
+	 */
+	private static void compareTempo(TempoMap map, ArrayList<Integer> tics, ArrayList<Double> speeds,
+			Random random, String what) {
+		expect(map.getChangeCount() == tics.size(), what + " has " + map.getChangeCount() + " changes, expected " + tics.size());
+		for(int i = 0; i < tics.size(); i++)
+			if(map.getChangeTic(i) != tics.get(i))
+				fail(what + " has change " + i + " at the wrong tic");
+		for(int i = 0; i < 8; i++) {
+			double tic = i < 4 ? tics.get(random.nextInt(tics.size())) : random.nextDouble() * MAX_TEMPO_TIC * 1.2;
+			int segment = upperBound(tics, (int)Math.floor(tic)) - 1;
+			expect(map.getSpeedFactor(tic) == speeds.get(segment), what + " has the wrong tempo at " + tic);
+
+			// Add up the time of every segment before the tic.
+			double nanos = 0;
+			for(int s = 0; s < segment; s++)
+				nanos += (tics.get(s + 1) - tics.get(s)) * 1_000_000.0 / speeds.get(s);
+			nanos += (tic - tics.get(segment)) * 1_000_000.0 / speeds.get(segment);
+			long converted = map.ticsToNanos(tic);
+			expect(Math.abs(converted - nanos) <= 1 + nanos * 1e-9,
+					what + " reaches tic " + tic + " at " + converted + " ns, expected " + nanos);
+			double back = map.nanosToTics(converted);
+			expect(Math.abs(back - tic) <= 1e-3, what + " converts tic " + tic + " back to " + back);
+		}
+	}
+}